@@ -0,0 +1,118 @@
+package connection;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserConnectionBenchmark {
+    @Param({"10", "1000", "10000"})
+    private int usersNumber;
+
+    @Param({"JSON", "BINARY"})
+    private MessageCodecType codecType;
+
+    private Message textMessage;
+    private Message loginAcceptedMessage;
+
+    private UserConnection sendingConnection;
+    private UserConnection textReceivingConnection;
+    private UserConnection loginAcceptedReceivingConnection;
+
+    @Setup
+    public void setUp() throws IOException {
+        Set<String> connectedUsernames = new HashSet<>();
+        for (int i = 0; i < usersNumber; i++) {
+            connectedUsernames.add("user-" + i);
+        }
+        textMessage = new Message(MessageType.TEXT_MESSAGE, "Hello everyone, the build is green again!");
+        loginAcceptedMessage = new Message(MessageType.LOGIN_ACCEPTED, connectedUsernames);
+
+        sendingConnection = createConnection(InputStream.nullInputStream(), OutputStream.nullOutputStream());
+        textReceivingConnection = createConnection(
+                new RepeatingInputStream(codecType.getCodec().encode(textMessage)), OutputStream.nullOutputStream());
+        loginAcceptedReceivingConnection = createConnection(
+                new RepeatingInputStream(codecType.getCodec().encode(loginAcceptedMessage)), OutputStream.nullOutputStream());
+    }
+
+    private UserConnection createConnection(InputStream inputStream, OutputStream outputStream) throws IOException {
+        UserConnection userConnection = new UserConnection(new InMemorySocket(inputStream, outputStream));
+        userConnection.setMessageCodecType(codecType);
+        return userConnection;
+    }
+
+    @Benchmark
+    public void sendTextMessage() {
+        sendingConnection.send(textMessage);
+    }
+
+    @Benchmark
+    public Message receiveTextMessage() throws IOException {
+        return textReceivingConnection.receive();
+    }
+
+    @Benchmark
+    public void sendLoginAccepted() {
+        sendingConnection.send(loginAcceptedMessage);
+    }
+
+    @Benchmark
+    public Message receiveLoginAccepted() throws IOException {
+        return loginAcceptedReceivingConnection.receive();
+    }
+
+    private static class InMemorySocket extends Socket {
+        private final InputStream inputStream;
+        private final OutputStream outputStream;
+
+        private InMemorySocket(InputStream inputStream, OutputStream outputStream) {
+            this.inputStream = inputStream;
+            this.outputStream = outputStream;
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return inputStream;
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            return outputStream;
+        }
+    }
+
+    private static class RepeatingInputStream extends InputStream {
+        private final byte[] frame;
+        private int position = 0;
+
+        private RepeatingInputStream(byte[] frame) {
+            this.frame = frame;
+        }
+
+        @Override
+        public int read() {
+            int nextByte = frame[position] & 0xFF;
+            position = (position + 1) % frame.length;
+            return nextByte;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            int copiedLength = Math.min(length, frame.length - position);
+            System.arraycopy(frame, position, buffer, offset, copiedLength);
+            position = (position + copiedLength) % frame.length;
+            return copiedLength;
+        }
+    }
+}
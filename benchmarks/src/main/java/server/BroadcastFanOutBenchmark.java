@@ -0,0 +1,99 @@
+package server;
+
+import connection.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BroadcastFanOutBenchmark {
+    @Param({"10", "1000", "10000"})
+    private int usersNumber;
+
+    @Param({"JSON", "BINARY"})
+    private MessageCodecType codecType;
+
+    private static final String TEAM_ROOM_NAME = "team";
+    private static final int TEAM_ROOM_EVERY_NTH_USER = 100;
+
+    private ServerController serverController;
+    private Message textMessage;
+    private ChatRoom teamRoom;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        ServerModel serverModel = new ServerModel();
+        for (int i = 0; i < usersNumber; i++) {
+            String username = "user-" + i;
+            ChatUserRecord userRecord = new ChatUserRecord(
+                    new BlackholeConnection(blackhole, codecType),
+                    username,
+                    UserMetaInfo.builder().username(username).firstConnectionTimeMillis(System.currentTimeMillis()).build());
+            serverModel.addNewOnlineUserIfAbsent(userRecord);
+            if (i % TEAM_ROOM_EVERY_NTH_USER == 0) {
+                serverModel.joinRoom(TEAM_ROOM_NAME, userRecord);
+            }
+        }
+        teamRoom = serverModel.getRoom(TEAM_ROOM_NAME);
+        serverController = new ServerController();
+        serverController.setServerModel(serverModel);
+        serverController.setServerView(serviceMessage -> {
+        });
+        textMessage = new Message(MessageType.TEXT_MESSAGE, "Hello everyone, the build is green again!");
+    }
+
+    @Benchmark
+    public void sendBroadcastMessage() {
+        serverController.sendBroadcastMessage(textMessage);
+    }
+
+    @Benchmark
+    public void sendTextMessageToTeamRoom() {
+        serverController.sendTextMessageToRoom("user-0", "Hello team, the build is green again!", teamRoom);
+    }
+
+    private static class BlackholeConnection implements MessageConnection {
+        private final Blackhole blackhole;
+        private final MessageCodecType codecType;
+
+        private BlackholeConnection(Blackhole blackhole, MessageCodecType codecType) {
+            this.blackhole = blackhole;
+            this.codecType = codecType;
+        }
+
+        @Override
+        public void send(EncodedFrame frame) {
+            blackhole.consume(frame.asByteBuffer(codecType));
+        }
+
+        @Override
+        public MessageCodecType getMessageCodecType() {
+            return codecType;
+        }
+
+        @Override
+        public void setMessageCodecType(MessageCodecType codecType) {
+        }
+
+        @Override
+        public void setFrameCompression(FrameCompression frameCompression) {
+        }
+
+        @Override
+        public SocketAddress getRemoteSocketAddress() {
+            return InetSocketAddress.createUnresolved("localhost", 0);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package server;
+
+import connection.ChatUserRecord;
+import connection.UserMetaInfo;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class ServerModelContentionBenchmark {
+    @State(Scope.Benchmark)
+    public static class SharedServerModel {
+        @Param({"10", "1000", "10000"})
+        private int usersNumber;
+
+        private final AtomicInteger threadsNumber = new AtomicInteger();
+
+        private ServerModel serverModel;
+
+        @Setup
+        public void setUp() {
+            serverModel = new ServerModel();
+            for (int i = 0; i < usersNumber; i++) {
+                serverModel.addNewOnlineUserIfAbsent(createUserRecord("online-user-" + i));
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class JoiningUser {
+        private ChatUserRecord userRecord;
+
+        @Setup
+        public void setUp(SharedServerModel sharedServerModel) {
+            userRecord = createUserRecord("joining-user-" + sharedServerModel.threadsNumber.incrementAndGet());
+        }
+    }
+
+    @Benchmark
+    public boolean joinAndLeave(SharedServerModel sharedServerModel, JoiningUser joiningUser) {
+        sharedServerModel.serverModel.addNewOnlineUserIfAbsent(joiningUser.userRecord);
+        return sharedServerModel.serverModel.removeOnlineUser(joiningUser.userRecord);
+    }
+
+    @Benchmark
+    public int iterateOnlineUsers(SharedServerModel sharedServerModel) {
+        int visitedUsersNumber = 0;
+        for (ChatUserRecord ignored : sharedServerModel.serverModel.getOnlineUsers()) {
+            visitedUsersNumber++;
+        }
+        return visitedUsersNumber;
+    }
+
+    private static ChatUserRecord createUserRecord(String username) {
+        return new ChatUserRecord(null, username,
+                UserMetaInfo.builder().username(username).firstConnectionTimeMillis(System.currentTimeMillis()).build());
+    }
+}
@@ -0,0 +1,25 @@
+package utilities;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FormatMessagesBuilderBenchmark {
+    private final String serviceMessage = "A new user connected with a remote socket /127.0.0.1:53412";
+
+    @Benchmark
+    public String buildMessageWithDateNow() {
+        return FormatMessagesBuilder.buildMessageWithDateNow(serviceMessage);
+    }
+
+    @Benchmark
+    public String buildChatTextAreaUserMessage() {
+        return FormatMessagesBuilder.buildChatTextAreaUserMessage("alice", serviceMessage);
+    }
+}
@@ -3,6 +3,7 @@ package client;
 import connection.*;
 import org.apache.commons.validator.routines.InetAddressValidator;
 import utilities.FormatMessagesBuilder;
+import utilities.Lifecycle;
 
 import javax.naming.InvalidNameException;
 import java.io.IOException;
@@ -10,15 +11,19 @@ import java.net.Inet4Address;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.util.HashMap;
+import java.util.Map;
 
 public class ClientController {
+    private static final String CHAT_COMMAND_PREFIX = "/";
+
     private UserConnection userConnection;
     private ClientModel clientModel;
     private ClientSwingView graphicView;
-    private volatile boolean hasClientConnectedToServer = false;
+    private final Lifecycle lifecycle = new Lifecycle();
 
     public boolean hasClientStarted() {
-        return hasClientConnectedToServer;
+        return lifecycle.isRunning();
     }
 
     public void setGraphicView(ClientSwingView graphicView) {
@@ -30,28 +35,32 @@ public class ClientController {
     }
 
     public void launch() {
-        while (true) {
-            if (hasClientConnectedToServer) {
+        try {
+            while (true) {
+                lifecycle.awaitState(Lifecycle.State.RUNNING);
                 registerOnServer();
                 receiveMessageFromCommonChat();
-                hasClientConnectedToServer = false;
+                lifecycle.setState(Lifecycle.State.STOPPED);
             }
+        } catch (InterruptedException ignored) {
         }
     }
 
     protected void establishConnectionToServer() {
-        if (!hasClientConnectedToServer) {
+        if (lifecycle.compareAndSetState(Lifecycle.State.STOPPED, Lifecycle.State.STARTING)) {
             try {
                 String serverAddress = graphicView.requestServerAddressByShowingInputDialog();
                 int port = graphicView.requestServerPortByShowingInputDialog();
 
                 createConnectionToServer(serverAddress, port);
-                hasClientConnectedToServer = true;
+                lifecycle.setState(Lifecycle.State.RUNNING);
                 graphicView.addMessageToCommonChat(FormatMessagesBuilder.buildChatTextAreaServiceMessage(
                         "You have connected to the server"));
             } catch (InvalidNameException ignored) {
+                lifecycle.setState(Lifecycle.State.STOPPED);
                 ignored.printStackTrace();
             } catch (Exception exception) {
+                lifecycle.setState(Lifecycle.State.STOPPED);
                 graphicView.showErrorMessageDialog(
                         "An error has occurred! " +
                                 "You may have entered the wrong server inet address or port. Try again");
@@ -80,13 +89,25 @@ public class ClientController {
 
 
     protected void registerOnServer() {
+        boolean isLoginRequestSent = false;
+        boolean isLoginRequestPending = false;
         while (true) {
             try {
+                if (!isLoginRequestSent) {
+                    sendLoginRequest(graphicView.requestUsernameByShowingInputDialog(), graphicView.requestPasswordByShowingInputDialog());
+                    isLoginRequestSent = true;
+                    isLoginRequestPending = true;
+                }
+
                 Message serverResponse = userConnection.receive();
 
                 if (MessageType.isTypeRequestUsername(serverResponse.getMessageType())) {
-                    String username = graphicView.requestUsernameByShowingInputDialog();
-                    userConnection.send(new Message(MessageType.NEW_USERNAME, username));
+                    if (isLoginRequestPending) {
+                        applyCodecSelectedByLoginRequest(serverResponse);
+                    } else {
+                        String username = graphicView.requestUsernameByShowingInputDialog();
+                        sendUsernameWithNegotiatedCodec(username, serverResponse);
+                    }
                 }
 
                 if (MessageType.isTypeRequestPassword(serverResponse.getMessageType())) {
@@ -95,6 +116,7 @@ public class ClientController {
                 }
 
                 if (MessageType.isTypeLoginError(serverResponse.getMessageType())) {
+                    isLoginRequestPending = false;
                     graphicView.showErrorMessageDialog("You entered an incorrect username or password, enter other ones...");
                     continue;
                 }
@@ -103,16 +125,17 @@ public class ClientController {
                     graphicView.addMessageToCommonChat(FormatMessagesBuilder.buildChatTextAreaServiceMessage(
                             "Your name is accepted! Welcome to common chat!"));
                     clientModel.setConnectedUsernames(serverResponse.getConnectedUsernames());
+                    clientModel.setRosterVersion(serverResponse.getRosterVersion());
                     break;
                 }
 
             } catch (InvalidNameException exception) {
-                if (hasClientConnectedToServer) {
+                if (lifecycle.isRunning()) {
                     disconnectFromServer();
                 }
                 break;
             } catch (Exception exception) {
-                if (hasClientConnectedToServer) {
+                if (lifecycle.isRunning()) {
                     graphicView.showErrorMessageDialog(
                             "An error occurred while registering. Try reconnecting...");
                     disconnectFromServer();
@@ -123,21 +146,178 @@ public class ClientController {
         }
     }
 
+    private void sendLoginRequest(String username, String password) {
+        Map<String, String> handshakeOptions = new HashMap<>();
+        handshakeOptions.put(Message.PRESENCE_MODE_OPTION, Message.DELTA_PRESENCE_MODE);
+        handshakeOptions.put(MessageCodecType.SELECTED_CODEC_OPTION, MessageCodecType.BINARY.getCodecName());
+        handshakeOptions.put(FrameCompression.SELECTED_COMPRESSION_OPTION, FrameCompression.DEFLATE_COMPRESSION_NAME);
+        handshakeOptions.put(Message.PASSWORD_OPTION, password);
+        userConnection.send(Message.builder()
+                .messageType(MessageType.LOGIN_REQUEST)
+                .messageText(username)
+                .handshakeOptions(handshakeOptions)
+                .build());
+    }
+
+    private void applyCodecSelectedByLoginRequest(Message requestForUsername) {
+        boolean isBinaryCodecSelected = userConnection.getMessageCodecType() == MessageCodecType.JSON
+                && MessageCodecType.isCodecSupported(
+                        requestForUsername.getHandshakeOption(MessageCodecType.SUPPORTED_CODECS_OPTION), MessageCodecType.BINARY);
+        if (isBinaryCodecSelected) {
+            userConnection.setMessageCodecType(MessageCodecType.BINARY);
+        }
+        if (isBinaryCodecSelected && FrameCompression.isDeflateSupported(
+                requestForUsername.getHandshakeOption(FrameCompression.SUPPORTED_COMPRESSIONS_OPTION))) {
+            userConnection.setFrameCompression(new FrameCompression(FrameCompression.DEFAULT_THRESHOLD_BYTES));
+        }
+    }
+
+    private void sendUsernameWithNegotiatedCodec(String username, Message requestForUsername) {
+        Map<String, String> handshakeOptions = new HashMap<>();
+        if (Message.DELTA_PRESENCE_MODE.equals(requestForUsername.getHandshakeOption(Message.PRESENCE_MODE_OPTION))) {
+            handshakeOptions.put(Message.PRESENCE_MODE_OPTION, Message.DELTA_PRESENCE_MODE);
+        }
+        String supportedCodecNames = requestForUsername.getHandshakeOption(MessageCodecType.SUPPORTED_CODECS_OPTION);
+        boolean isBinaryCodecSelected = userConnection.getMessageCodecType() == MessageCodecType.JSON
+                && MessageCodecType.isCodecSupported(supportedCodecNames, MessageCodecType.BINARY);
+        boolean isDeflateSelected = isBinaryCodecSelected && FrameCompression.isDeflateSupported(
+                requestForUsername.getHandshakeOption(FrameCompression.SUPPORTED_COMPRESSIONS_OPTION));
+        if (isBinaryCodecSelected) {
+            handshakeOptions.put(MessageCodecType.SELECTED_CODEC_OPTION, MessageCodecType.BINARY.getCodecName());
+        }
+        if (isDeflateSelected) {
+            handshakeOptions.put(FrameCompression.SELECTED_COMPRESSION_OPTION, FrameCompression.DEFLATE_COMPRESSION_NAME);
+        }
+        userConnection.send(Message.builder()
+                .messageType(MessageType.NEW_USERNAME)
+                .messageText(username)
+                .handshakeOptions(handshakeOptions.isEmpty() ? null : handshakeOptions)
+                .build());
+        if (isBinaryCodecSelected) {
+            userConnection.setMessageCodecType(MessageCodecType.BINARY);
+        }
+        if (isDeflateSelected) {
+            userConnection.setFrameCompression(new FrameCompression(FrameCompression.DEFAULT_THRESHOLD_BYTES));
+        }
+    }
+
     protected void sendMessageToCommonChat(String textToSend) {
         try {
-            userConnection.send(new Message(MessageType.TEXT_MESSAGE, textToSend));
+            if (textToSend.startsWith(CHAT_COMMAND_PREFIX)) {
+                handleChatCommand(textToSend.trim());
+                return;
+            }
+            String currentRoomName = clientModel.getCurrentRoomName();
+            userConnection.send(Message.builder()
+                    .messageType(MessageType.TEXT_MESSAGE)
+                    .messageText(textToSend)
+                    .roomName(Message.DEFAULT_ROOM_NAME.equals(currentRoomName) ? null : currentRoomName)
+                    .build());
         } catch (Exception exception) {
             graphicView.showErrorMessageDialog("Error sending the message");
         }
     }
 
+    private void handleChatCommand(String command) {
+        String[] commandParts = command.split("\\s+", 2);
+        String argument = commandParts.length > 1 ? commandParts[1] : null;
+        switch (commandParts[0]) {
+            case "/join" -> userConnection.send(Message.builder()
+                    .messageType(MessageType.JOIN_ROOM)
+                    .roomName(argument)
+                    .build());
+            case "/leave" -> userConnection.send(Message.builder()
+                    .messageType(MessageType.LEAVE_ROOM)
+                    .roomName(argument == null ? clientModel.getCurrentRoomName() : argument)
+                    .build());
+            case "/rooms" -> userConnection.send(new Message(MessageType.LIST_ROOMS));
+            case "/msg" -> sendPrivateMessage(argument);
+            case "/room" -> {
+                String roomName = argument == null ? Message.DEFAULT_ROOM_NAME : argument;
+                graphicView.addMessageToCommonChat(FormatMessagesBuilder.buildChatTextAreaServiceMessage(
+                        clientModel.setCurrentRoomName(roomName)
+                                ? "Your messages now go to #" + roomName
+                                : "You are not a member of the room " + roomName));
+            }
+            default -> graphicView.addMessageToCommonChat(FormatMessagesBuilder.buildChatTextAreaServiceMessage(
+                    "Unknown command. Use /join <room>, /leave [room], /room [room], /rooms or /msg <user> <text>"));
+        }
+    }
+
+    private void sendPrivateMessage(String argument) {
+        String[] recipientAndText = argument == null ? new String[0] : argument.split("\\s+", 2);
+        if (recipientAndText.length < 2) {
+            graphicView.addMessageToCommonChat(FormatMessagesBuilder.buildChatTextAreaServiceMessage(
+                    "Use /msg <user> <text>"));
+            return;
+        }
+        userConnection.send(Message.builder()
+                .messageType(MessageType.PRIVATE_MESSAGE)
+                .recipientUsername(recipientAndText[0])
+                .messageText(recipientAndText[1])
+                .build());
+    }
+
     protected void receiveMessageFromCommonChat() {
-        while (hasClientConnectedToServer) {
+        while (lifecycle.isRunning()) {
             try {
                 Message serverResponse = userConnection.receive();
 
                 if (MessageType.isTypeTextMessage(serverResponse.getMessageType())) {
-                    graphicView.addMessageToCommonChat(serverResponse.getMessageText());
+                    addTextMessageToCommonChat(serverResponse);
+                }
+
+                if (isMessageForOtherRoom(serverResponse)) {
+                    handleOtherRoomPresence(serverResponse);
+                    continue;
+                }
+
+                if (MessageType.isTypePrivateMessage(serverResponse.getMessageType())) {
+                    long timestampMillis = serverResponse.getTimestampMillis() == null
+                            ? System.currentTimeMillis()
+                            : serverResponse.getTimestampMillis();
+                    graphicView.addMessageToCommonChat(FormatMessagesBuilder.buildChatTextAreaUserMessage(
+                            serverResponse.getSenderUsername() + " -> " + serverResponse.getRecipientUsername() + " (private)",
+                            serverResponse.getMessageText(), timestampMillis));
+                }
+
+                if (MessageType.isTypeJoinRoom(serverResponse.getMessageType())) {
+                    clientModel.addJoinedRoom(serverResponse.getRoomName());
+                    graphicView.addMessageToCommonChat(FormatMessagesBuilder.buildChatTextAreaServiceMessage(
+                            "You joined #" + serverResponse.getRoomName() + ", members: "
+                                    + String.join(", ", serverResponse.getConnectedUsernames())));
+                }
+
+                if (MessageType.isTypeLeaveRoom(serverResponse.getMessageType())) {
+                    clientModel.removeJoinedRoom(serverResponse.getRoomName());
+                    graphicView.addMessageToCommonChat(FormatMessagesBuilder.buildChatTextAreaServiceMessage(
+                            "You left #" + serverResponse.getRoomName()));
+                }
+
+                if (MessageType.isTypeListRooms(serverResponse.getMessageType())) {
+                    graphicView.addMessageToCommonChat(FormatMessagesBuilder.buildChatTextAreaServiceMessage(
+                            "Rooms: " + String.join(", ", serverResponse.getRoomNames())));
+                }
+
+                if (MessageType.isTypeError(serverResponse.getMessageType())
+                        || MessageType.isTypeThrottle(serverResponse.getMessageType())
+                        || MessageType.isTypeServerShutdown(serverResponse.getMessageType())) {
+                    graphicView.addMessageToCommonChat(FormatMessagesBuilder.buildChatTextAreaServiceMessage(
+                            serverResponse.getMessageText()));
+                }
+
+                if (MessageType.isTypePing(serverResponse.getMessageType())) {
+                    userConnection.send(new Message(MessageType.PONG));
+                }
+
+                if (MessageType.isTypePresenceDelta(serverResponse.getMessageType())) {
+                    applyPresenceDelta(serverResponse);
+                }
+
+                if (MessageType.isTypePresenceSnapshot(serverResponse.getMessageType())) {
+                    clientModel.setConnectedUsernames(serverResponse.getConnectedUsernames());
+                    clientModel.setRosterVersion(serverResponse.getRosterVersion());
+                    graphicView.setALlOnlineUsersToConnectedUsernamesList(clientModel.getConnectedUsernames());
                 }
 
                 if (MessageType.isTypeNewUserAdded(serverResponse.getMessageType())) {
@@ -156,7 +336,7 @@ public class ClientController {
                             "The user " + usernameForDelete + " left from the chat"));
                 }
             } catch (Exception exception) {
-                if (hasClientConnectedToServer) {
+                if (lifecycle.isRunning()) {
                     graphicView.showErrorMessageDialog("Error when receiving a message from the server");
                     disconnectFromServer();
                 }
@@ -165,14 +345,63 @@ public class ClientController {
         }
     }
 
+    private void applyPresenceDelta(Message presenceDelta) {
+        if (!clientModel.isPresenceDeltaApplicable(presenceDelta.getBaseRosterVersion())) {
+            userConnection.send(new Message(MessageType.PRESENCE_SNAPSHOT));
+            return;
+        }
+        if (!clientModel.applyPresenceDelta(presenceDelta.getConnectedUsernames(),
+                presenceDelta.getDisconnectedUsernames(), presenceDelta.getRosterVersion())) {
+            return;
+        }
+        graphicView.setALlOnlineUsersToConnectedUsernamesList(clientModel.getConnectedUsernames());
+        graphicView.addMessageToCommonChat(FormatMessagesBuilder.buildChatTextAreaServiceMessage(
+                FormatMessagesBuilder.buildPresenceSummary(presenceDelta.getConnectedUsernames(), presenceDelta.getDisconnectedUsernames())));
+    }
+
+    private boolean isMessageForOtherRoom(Message message) {
+        return (MessageType.isTypeNewUserAdded(message.getMessageType()) || MessageType.isTypeUserDeleted(message.getMessageType()))
+                && message.getRoomName() != null
+                && !Message.DEFAULT_ROOM_NAME.equals(message.getRoomName());
+    }
+
+    private void handleOtherRoomPresence(Message presenceMessage) {
+        String action = MessageType.isTypeNewUserAdded(presenceMessage.getMessageType()) ? " joined #" : " left #";
+        graphicView.addMessageToCommonChat(FormatMessagesBuilder.buildChatTextAreaServiceMessage(
+                "The user " + presenceMessage.getMessageText() + action + presenceMessage.getRoomName()));
+    }
+
+    private void addTextMessageToCommonChat(Message textMessage) {
+        String roomName = textMessage.getRoomName() == null ? Message.DEFAULT_ROOM_NAME : textMessage.getRoomName();
+        if (textMessage.getSequenceNumber() != null) {
+            long lostMessagesNumber = clientModel.registerMessageSequenceNumberAndCountLostOnes(roomName, textMessage.getSequenceNumber());
+            if (lostMessagesNumber > 0) {
+                graphicView.addMessageToCommonChat(FormatMessagesBuilder.buildChatTextAreaServiceMessage(
+                        lostMessagesNumber + " message(s) did not reach you"));
+            }
+        }
+        if (textMessage.getSenderUsername() == null) {
+            graphicView.addMessageToCommonChat(textMessage.getMessageText());
+            return;
+        }
+        long timestampMillis = textMessage.getTimestampMillis() == null
+                ? System.currentTimeMillis()
+                : textMessage.getTimestampMillis();
+        String senderTitle = Message.DEFAULT_ROOM_NAME.equals(roomName)
+                ? textMessage.getSenderUsername()
+                : "#" + roomName + " " + textMessage.getSenderUsername();
+        graphicView.addMessageToCommonChat(FormatMessagesBuilder.buildChatTextAreaUserMessage(
+                senderTitle, textMessage.getMessageText(), timestampMillis));
+    }
+
     protected void disconnectFromServer() {
         try {
-            if (hasClientConnectedToServer) {
+            if (lifecycle.compareAndSetState(Lifecycle.State.RUNNING, Lifecycle.State.STOPPING)) {
                 userConnection.send(new Message(MessageType.DISCONNECT));
                 clientModel.getConnectedUsernames().clear();
+                clientModel.resetRoomsAndMessageSequenceNumbers();
                 graphicView.clearUsernamesList();
                 userConnection.close();
-                hasClientConnectedToServer = false;
             } else {
                 graphicView.showErrorMessageDialog("You are already disabled");
             }
@@ -1,11 +1,20 @@
 package client;
 
+import connection.Message;
+
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 public class ClientModel {
     private Set<String> connectedUsernames = new HashSet<>();
 
+    private final Map<String, MessageSequenceTracker> messageSequenceTrackersByRoom = new HashMap<>();
+    private final Set<String> joinedRoomNames = new HashSet<>();
+    private String currentRoomName = Message.DEFAULT_ROOM_NAME;
+    private Long rosterVersion;
+
     protected Set<String> getConnectedUsernames() {
         return connectedUsernames;
     }
@@ -21,4 +30,63 @@ public class ClientModel {
     protected void setConnectedUsernames(Set<String> connectedUsernames) {
         this.connectedUsernames = connectedUsernames;
     }
+
+    protected synchronized void setRosterVersion(Long rosterVersion) {
+        this.rosterVersion = rosterVersion;
+    }
+
+    protected synchronized boolean isPresenceDeltaApplicable(Long baseRosterVersion) {
+        return rosterVersion != null && baseRosterVersion != null && rosterVersion >= baseRosterVersion;
+    }
+
+    protected synchronized boolean applyPresenceDelta(Set<String> joinedUsernames, Set<String> leftUsernames, Long deltaRosterVersion) {
+        if (deltaRosterVersion == null || rosterVersion >= deltaRosterVersion) {
+            return false;
+        }
+        if (leftUsernames != null) {
+            connectedUsernames.removeAll(leftUsernames);
+        }
+        if (joinedUsernames != null) {
+            connectedUsernames.addAll(joinedUsernames);
+        }
+        rosterVersion = deltaRosterVersion;
+        return true;
+    }
+
+    protected synchronized long registerMessageSequenceNumberAndCountLostOnes(String roomName, long sequenceNumber) {
+        return messageSequenceTrackersByRoom.computeIfAbsent(roomName, name -> new MessageSequenceTracker())
+                .registerSequenceNumberAndCountLostOnes(sequenceNumber);
+    }
+
+    protected synchronized String getCurrentRoomName() {
+        return currentRoomName;
+    }
+
+    protected synchronized boolean setCurrentRoomName(String roomName) {
+        if (!Message.DEFAULT_ROOM_NAME.equals(roomName) && !joinedRoomNames.contains(roomName)) {
+            return false;
+        }
+        currentRoomName = roomName;
+        return true;
+    }
+
+    protected synchronized void addJoinedRoom(String roomName) {
+        joinedRoomNames.add(roomName);
+        currentRoomName = roomName;
+    }
+
+    protected synchronized void removeJoinedRoom(String roomName) {
+        joinedRoomNames.remove(roomName);
+        messageSequenceTrackersByRoom.remove(roomName);
+        if (roomName.equals(currentRoomName)) {
+            currentRoomName = Message.DEFAULT_ROOM_NAME;
+        }
+    }
+
+    protected synchronized void resetRoomsAndMessageSequenceNumbers() {
+        rosterVersion = null;
+        messageSequenceTrackersByRoom.clear();
+        joinedRoomNames.clear();
+        currentRoomName = Message.DEFAULT_ROOM_NAME;
+    }
 }
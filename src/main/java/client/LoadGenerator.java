@@ -0,0 +1,254 @@
+package client;
+
+import connection.Message;
+import connection.MessageCodecType;
+import connection.MessageType;
+import connection.UserConnection;
+import utilities.LatencyHistogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+public class LoadGenerator {
+    private static final String MESSAGE_MARKER = "load-generator ";
+
+    private final LoadGeneratorSettings settings;
+
+    private final LatencyHistogram joinLatencies = new LatencyHistogram();
+    private final LatencyHistogram deliveryLatencies = new LatencyHistogram();
+
+    private final LongAdder joinedSessionsNumber = new LongAdder();
+    private final LongAdder failedLoginsNumber = new LongAdder();
+    private final LongAdder connectionErrorsNumber = new LongAdder();
+    private final LongAdder sentMessagesNumber = new LongAdder();
+    private final LongAdder receivedMessagesNumber = new LongAdder();
+    private final LongAdder receivedPresenceMessagesNumber = new LongAdder();
+    private final LongAdder receivedThrottleMessagesNumber = new LongAdder();
+
+    private long sendingDeadlineNanos;
+
+    public LoadGenerator(LoadGeneratorSettings settings) {
+        this.settings = settings;
+    }
+
+    public void run() throws InterruptedException {
+        long startNanos = System.nanoTime();
+        sendingDeadlineNanos = startNanos + TimeUnit.SECONDS.toNanos(settings.getDurationSeconds());
+        try (ExecutorService sessionsExecutor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < settings.getSessionsNumber(); i++) {
+                int sessionIndex = i;
+                sessionsExecutor.execute(() -> runSession(sessionIndex));
+            }
+        }
+        printReport(System.out, System.nanoTime() - startNanos);
+    }
+
+    private void runSession(int sessionIndex) {
+        long connectionStartNanos = System.nanoTime();
+        String username = settings.getUsernamePrefix() + sessionIndex;
+        UserConnection userConnection = null;
+        try {
+            userConnection = new UserConnection(new Socket(settings.getServerAddress(), settings.getServerPort()));
+            if (!registerOnServer(userConnection, username)) {
+                failedLoginsNumber.increment();
+                return;
+            }
+            joinLatencies.record(System.nanoTime() - connectionStartNanos);
+            joinedSessionsNumber.increment();
+
+            UserConnection registeredConnection = userConnection;
+            Thread receiverThread = Thread.ofVirtual().start(() -> receiveMessages(registeredConnection, username));
+            sendMessages(userConnection, sessionIndex);
+            Thread.sleep(TimeUnit.SECONDS.toMillis(settings.getDrainSeconds()));
+            userConnection.send(new Message(MessageType.DISCONNECT));
+            closeQuietly(userConnection);
+            receiverThread.join();
+        } catch (IOException exception) {
+            connectionErrorsNumber.increment();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        } finally {
+            closeQuietly(userConnection);
+        }
+    }
+
+    private boolean registerOnServer(UserConnection userConnection, String username) throws IOException {
+        boolean isLoginRequestPending = settings.isSingleRoundTripLogin();
+        if (isLoginRequestPending) {
+            sendLoginRequest(userConnection, username);
+        }
+        while (true) {
+            Message serverResponse = userConnection.receive();
+
+            if (MessageType.isTypeRequestUsername(serverResponse.getMessageType())) {
+                if (isLoginRequestPending) {
+                    applyCodecSelectedByLoginRequest(userConnection, serverResponse);
+                } else {
+                    sendUsername(userConnection, username, serverResponse);
+                }
+            }
+
+            if (MessageType.isTypeRequestPassword(serverResponse.getMessageType())) {
+                userConnection.send(new Message(MessageType.NEW_PASSWORD, settings.getPassword()));
+            }
+
+            if (MessageType.isTypeLoginError(serverResponse.getMessageType())) {
+                return false;
+            }
+
+            if (MessageType.isTypeLoginAccepted(serverResponse.getMessageType())) {
+                return true;
+            }
+        }
+    }
+
+    private void sendLoginRequest(UserConnection userConnection, String username) {
+        Map<String, String> handshakeOptions = new HashMap<>();
+        if (settings.isDeltaPresence()) {
+            handshakeOptions.put(Message.PRESENCE_MODE_OPTION, Message.DELTA_PRESENCE_MODE);
+        }
+        if (settings.getCodecType() != MessageCodecType.JSON) {
+            handshakeOptions.put(MessageCodecType.SELECTED_CODEC_OPTION, settings.getCodecType().getCodecName());
+        }
+        handshakeOptions.put(Message.PASSWORD_OPTION, settings.getPassword());
+        userConnection.send(Message.builder()
+                .messageType(MessageType.LOGIN_REQUEST)
+                .messageText(username)
+                .handshakeOptions(handshakeOptions)
+                .build());
+    }
+
+    private void applyCodecSelectedByLoginRequest(UserConnection userConnection, Message requestForUsername) {
+        MessageCodecType codecType = settings.getCodecType();
+        if (userConnection.getMessageCodecType() == MessageCodecType.JSON
+                && codecType != MessageCodecType.JSON
+                && MessageCodecType.isCodecSupported(requestForUsername.getHandshakeOption(MessageCodecType.SUPPORTED_CODECS_OPTION), codecType)) {
+            userConnection.setMessageCodecType(codecType);
+        }
+    }
+
+    private void sendUsername(UserConnection userConnection, String username, Message requestForUsername) {
+        Map<String, String> handshakeOptions = new HashMap<>();
+        if (settings.isDeltaPresence()
+                && Message.DELTA_PRESENCE_MODE.equals(requestForUsername.getHandshakeOption(Message.PRESENCE_MODE_OPTION))) {
+            handshakeOptions.put(Message.PRESENCE_MODE_OPTION, Message.DELTA_PRESENCE_MODE);
+        }
+        String supportedCodecNames = requestForUsername.getHandshakeOption(MessageCodecType.SUPPORTED_CODECS_OPTION);
+        MessageCodecType codecType = settings.getCodecType();
+        boolean isCodecSelected = userConnection.getMessageCodecType() == MessageCodecType.JSON
+                && codecType != MessageCodecType.JSON
+                && MessageCodecType.isCodecSupported(supportedCodecNames, codecType);
+        if (isCodecSelected) {
+            handshakeOptions.put(MessageCodecType.SELECTED_CODEC_OPTION, codecType.getCodecName());
+        }
+        userConnection.send(Message.builder()
+                .messageType(MessageType.NEW_USERNAME)
+                .messageText(username)
+                .handshakeOptions(handshakeOptions.isEmpty() ? null : handshakeOptions)
+                .build());
+        if (isCodecSelected) {
+            userConnection.setMessageCodecType(codecType);
+        }
+    }
+
+    private void sendMessages(UserConnection userConnection, int sessionIndex) {
+        if (settings.getMessagesPerSecondPerSession() <= 0) {
+            LockSupport.parkNanos(sendingDeadlineNanos - System.nanoTime());
+            return;
+        }
+        long sendingIntervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / settings.getMessagesPerSecondPerSession());
+        long nextSendingNanos = System.nanoTime() + ThreadLocalRandom.current().nextLong(Math.max(1, sendingIntervalNanos));
+        while (nextSendingNanos < sendingDeadlineNanos) {
+            LockSupport.parkNanos(nextSendingNanos - System.nanoTime());
+            userConnection.send(new Message(MessageType.TEXT_MESSAGE,
+                    MESSAGE_MARKER + sessionIndex + " " + System.nanoTime()));
+            sentMessagesNumber.increment();
+            nextSendingNanos += sendingIntervalNanos;
+        }
+    }
+
+    private void receiveMessages(UserConnection userConnection, String username) {
+        try {
+            while (true) {
+                Message message = userConnection.receive();
+                if (isPresenceMessage(message)) {
+                    receivedPresenceMessagesNumber.increment();
+                    continue;
+                }
+                if (MessageType.isTypePing(message.getMessageType())) {
+                    userConnection.send(new Message(MessageType.PONG));
+                    continue;
+                }
+                if (MessageType.isTypeThrottle(message.getMessageType())) {
+                    receivedThrottleMessagesNumber.increment();
+                    continue;
+                }
+                if (!MessageType.isTypeTextMessage(message.getMessageType()) || message.getMessageText() == null) {
+                    continue;
+                }
+                long receivingNanos = System.nanoTime();
+                receivedMessagesNumber.increment();
+                String messageText = message.getMessageText();
+                if (username.equals(message.getSenderUsername()) && messageText.startsWith(MESSAGE_MARKER)) {
+                    long sendingNanos = Long.parseLong(messageText.substring(messageText.lastIndexOf(' ') + 1));
+                    deliveryLatencies.record(receivingNanos - sendingNanos);
+                }
+            }
+        } catch (Exception ignored) {
+        }
+    }
+
+    private static boolean isPresenceMessage(Message message) {
+        return MessageType.isTypeNewUserAdded(message.getMessageType())
+                || MessageType.isTypeUserDeleted(message.getMessageType())
+                || MessageType.isTypePresenceDelta(message.getMessageType());
+    }
+
+    private static void closeQuietly(UserConnection userConnection) {
+        if (userConnection == null) {
+            return;
+        }
+        try {
+            userConnection.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private void printReport(PrintStream printStream, long elapsedNanos) {
+        double sendingSeconds = settings.getDurationSeconds();
+        double elapsedSeconds = elapsedNanos / 1e9;
+        printStream.println("Load generator report");
+        printStream.printf("  sessions: requested %d, joined %d, failed logins %d, connection errors %d%n",
+                settings.getSessionsNumber(), joinedSessionsNumber.sum(), failedLoginsNumber.sum(), connectionErrorsNumber.sum());
+        printStream.printf("  elapsed: %.1f s (sending %.1f s)%n", elapsedSeconds, sendingSeconds);
+        printStream.printf("  sent: %d messages, %.1f msg/s%n",
+                sentMessagesNumber.sum(), sentMessagesNumber.sum() / sendingSeconds);
+        printStream.printf("  delivered: %d messages, %.1f msg/s%n",
+                receivedMessagesNumber.sum(), receivedMessagesNumber.sum() / sendingSeconds);
+        printStream.printf("  login: %s%n", settings.isSingleRoundTripLogin() ? "single round trip" : "interactive");
+        printStream.printf("  presence updates: %d messages (%s)%n",
+                receivedPresenceMessagesNumber.sum(), settings.isDeltaPresence() ? "delta" : "legacy");
+        printStream.printf("  throttle notices: %d%n", receivedThrottleMessagesNumber.sum());
+        printLatencies(printStream, "join latency", joinLatencies);
+        printLatencies(printStream, "send-to-deliver latency", deliveryLatencies);
+    }
+
+    private static void printLatencies(PrintStream printStream, String title, LatencyHistogram latencies) {
+        printStream.printf("  %s (%d samples): p50 %.3f ms, p99 %.3f ms, p999 %.3f ms, max %.3f ms%n",
+                title,
+                latencies.getCount(),
+                latencies.getValueAtPercentile(50) / 1e6,
+                latencies.getValueAtPercentile(99) / 1e6,
+                latencies.getValueAtPercentile(99.9) / 1e6,
+                latencies.getMax() / 1e6);
+    }
+}
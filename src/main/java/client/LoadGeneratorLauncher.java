@@ -0,0 +1,74 @@
+package client;
+
+import connection.Message;
+import connection.MessageCodecType;
+import org.apache.commons.cli.*;
+
+public class LoadGeneratorLauncher {
+    public static void main(String[] args) throws InterruptedException {
+        Options options = new Options();
+        options.addOption("a", "address", true, "server address");
+        options.addOption("p", "port", true, "server port");
+        options.addOption(Option.builder("w").longOpt("password").hasArg().required().desc("current session password").build());
+        options.addOption("n", "sessions", true, "number of concurrent chat sessions");
+        options.addOption("r", "rate", true, "text messages per second sent by each session");
+        options.addOption("d", "duration", true, "sending duration in seconds");
+        options.addOption(null, "drain", true, "seconds to wait for in-flight messages before disconnecting");
+        options.addOption("u", "username-prefix", true, "prefix of generated usernames");
+        options.addOption("c", "codec", true, "wire codec to negotiate: json or binary");
+        options.addOption(null, "presence", true, "presence updates to negotiate: delta or legacy");
+        options.addOption(null, "login", true, "login handshake: single for one round trip or interactive");
+
+        LoadGeneratorSettings settings;
+        try {
+            settings = parseSettings(new DefaultParser().parse(options, args));
+        } catch (ParseException | IllegalArgumentException exception) {
+            System.err.println(exception.getMessage());
+            new HelpFormatter().printHelp("LoadGeneratorLauncher", options);
+            System.exit(1);
+            return;
+        }
+
+        new LoadGenerator(settings).run();
+    }
+
+    private static LoadGeneratorSettings parseSettings(CommandLine commandLine) {
+        LoadGeneratorSettings.LoadGeneratorSettingsBuilder settingsBuilder = LoadGeneratorSettings.builder()
+                .password(commandLine.getOptionValue("password"));
+        if (commandLine.hasOption("address")) {
+            settingsBuilder.serverAddress(commandLine.getOptionValue("address"));
+        }
+        if (commandLine.hasOption("port")) {
+            settingsBuilder.serverPort(Integer.parseInt(commandLine.getOptionValue("port")));
+        }
+        if (commandLine.hasOption("sessions")) {
+            settingsBuilder.sessionsNumber(Integer.parseInt(commandLine.getOptionValue("sessions")));
+        }
+        if (commandLine.hasOption("rate")) {
+            settingsBuilder.messagesPerSecondPerSession(Double.parseDouble(commandLine.getOptionValue("rate")));
+        }
+        if (commandLine.hasOption("duration")) {
+            settingsBuilder.durationSeconds(Integer.parseInt(commandLine.getOptionValue("duration")));
+        }
+        if (commandLine.hasOption("drain")) {
+            settingsBuilder.drainSeconds(Integer.parseInt(commandLine.getOptionValue("drain")));
+        }
+        if (commandLine.hasOption("username-prefix")) {
+            settingsBuilder.usernamePrefix(commandLine.getOptionValue("username-prefix"));
+        }
+        if (commandLine.hasOption("codec")) {
+            MessageCodecType codecType = MessageCodecType.fromCodecName(commandLine.getOptionValue("codec"));
+            if (codecType == null) {
+                throw new IllegalArgumentException("Unknown codec: " + commandLine.getOptionValue("codec"));
+            }
+            settingsBuilder.codecType(codecType);
+        }
+        if (commandLine.hasOption("presence")) {
+            settingsBuilder.deltaPresence(Message.DELTA_PRESENCE_MODE.equals(commandLine.getOptionValue("presence")));
+        }
+        if (commandLine.hasOption("login")) {
+            settingsBuilder.singleRoundTripLogin("single".equals(commandLine.getOptionValue("login")));
+        }
+        return settingsBuilder.build();
+    }
+}
@@ -0,0 +1,41 @@
+package client;
+
+import connection.MessageCodecType;
+import lombok.Builder;
+import lombok.Getter;
+
+@Getter
+@Builder
+public class LoadGeneratorSettings {
+    @Builder.Default
+    private final String serverAddress = "localhost";
+
+    @Builder.Default
+    private final int serverPort = 8189;
+
+    private final String password;
+
+    @Builder.Default
+    private final int sessionsNumber = 100;
+
+    @Builder.Default
+    private final double messagesPerSecondPerSession = 1;
+
+    @Builder.Default
+    private final int durationSeconds = 30;
+
+    @Builder.Default
+    private final int drainSeconds = 2;
+
+    @Builder.Default
+    private final String usernamePrefix = "bot-";
+
+    @Builder.Default
+    private final MessageCodecType codecType = MessageCodecType.BINARY;
+
+    @Builder.Default
+    private final boolean deltaPresence = true;
+
+    @Builder.Default
+    private final boolean singleRoundTripLogin = true;
+}
@@ -0,0 +1,39 @@
+package client;
+
+import java.util.TreeSet;
+
+public class MessageSequenceTracker {
+    private static final int REORDERING_WINDOW = 256;
+    private static final int MAX_TRACKED_MISSING_SEQUENCE_NUMBERS = 4096;
+
+    private final TreeSet<Long> missingSequenceNumbers = new TreeSet<>();
+    private long highestSequenceNumber = -1;
+
+    public long registerSequenceNumberAndCountLostOnes(long sequenceNumber) {
+        if (highestSequenceNumber < 0) {
+            highestSequenceNumber = sequenceNumber;
+            return 0;
+        }
+        long lostMessagesNumber = 0;
+        if (sequenceNumber > highestSequenceNumber) {
+            long gapLength = sequenceNumber - highestSequenceNumber - 1;
+            if (gapLength > MAX_TRACKED_MISSING_SEQUENCE_NUMBERS) {
+                lostMessagesNumber += gapLength;
+            } else {
+                for (long missing = highestSequenceNumber + 1; missing < sequenceNumber; missing++) {
+                    missingSequenceNumbers.add(missing);
+                }
+            }
+            highestSequenceNumber = sequenceNumber;
+        } else {
+            missingSequenceNumbers.remove(sequenceNumber);
+        }
+        while (!missingSequenceNumbers.isEmpty()
+                && (missingSequenceNumbers.first() < highestSequenceNumber - REORDERING_WINDOW
+                || missingSequenceNumbers.size() > MAX_TRACKED_MISSING_SEQUENCE_NUMBERS)) {
+            missingSequenceNumbers.pollFirst();
+            lostMessagesNumber++;
+        }
+        return lostMessagesNumber;
+    }
+}
@@ -0,0 +1,333 @@
+package connection;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Length-prefixed binary frames: a varint body length followed by the body
+ * {@code [frame flags][message type ordinal][field mask varint][present fields]}.
+ * A compressed frame has flags 1 and everything after the flags deflated with the connection's {@link FrameCompression}.
+ * Strings are UTF-8 with varint lengths, collections carry a varint element count, numbers are varints.
+ */
+public class BinaryMessageCodec implements MessageCodec {
+    private static final int NO_MESSAGE_TYPE = 0xFF;
+    static final byte PLAIN_FRAME_FLAGS = 0;
+    static final byte COMPRESSED_FRAME_FLAGS = 1;
+
+    private static final int MESSAGE_TEXT_FIELD = 1;
+    private static final int CONNECTED_USERNAMES_FIELD = 1 << 1;
+    private static final int HANDSHAKE_OPTIONS_FIELD = 1 << 2;
+    private static final int SENDER_USERNAME_FIELD = 1 << 3;
+    private static final int SEQUENCE_NUMBER_FIELD = 1 << 4;
+    private static final int TIMESTAMP_MILLIS_FIELD = 1 << 5;
+    private static final int ROOM_NAME_FIELD = 1 << 6;
+    private static final int ROOM_NAMES_FIELD = 1 << 7;
+    private static final int RECIPIENT_USERNAME_FIELD = 1 << 8;
+    private static final int ROSTER_VERSION_FIELD = 1 << 9;
+    private static final int BASE_ROSTER_VERSION_FIELD = 1 << 10;
+    private static final int DISCONNECTED_USERNAMES_FIELD = 1 << 11;
+
+    private static final MessageType[] MESSAGE_TYPES = MessageType.values();
+
+    @Override
+    public byte[] encode(Message message) {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(64);
+        body.write(PLAIN_FRAME_FLAGS);
+        body.write(message.getMessageType() == null ? NO_MESSAGE_TYPE : message.getMessageType().ordinal());
+        writeVarInt(body, buildFieldMask(message));
+        if (message.getMessageText() != null) {
+            writeString(body, message.getMessageText());
+        }
+        if (message.getConnectedUsernames() != null) {
+            writeStrings(body, message.getConnectedUsernames());
+        }
+        if (message.getHandshakeOptions() != null) {
+            writeVarInt(body, message.getHandshakeOptions().size());
+            for (Map.Entry<String, String> option : message.getHandshakeOptions().entrySet()) {
+                writeString(body, option.getKey());
+                writeString(body, option.getValue());
+            }
+        }
+        if (message.getSenderUsername() != null) {
+            writeString(body, message.getSenderUsername());
+        }
+        if (message.getSequenceNumber() != null) {
+            writeVarLong(body, message.getSequenceNumber());
+        }
+        if (message.getTimestampMillis() != null) {
+            writeVarLong(body, message.getTimestampMillis());
+        }
+        if (message.getRoomName() != null) {
+            writeString(body, message.getRoomName());
+        }
+        if (message.getRoomNames() != null) {
+            writeStrings(body, message.getRoomNames());
+        }
+        if (message.getRecipientUsername() != null) {
+            writeString(body, message.getRecipientUsername());
+        }
+        if (message.getRosterVersion() != null) {
+            writeVarLong(body, message.getRosterVersion());
+        }
+        if (message.getBaseRosterVersion() != null) {
+            writeVarLong(body, message.getBaseRosterVersion());
+        }
+        if (message.getDisconnectedUsernames() != null) {
+            writeStrings(body, message.getDisconnectedUsernames());
+        }
+
+        byte[] bodyBytes = body.toByteArray();
+        ByteArrayOutputStream frame = new ByteArrayOutputStream(bodyBytes.length + 5);
+        writeVarInt(frame, bodyBytes.length);
+        frame.writeBytes(bodyBytes);
+        return frame.toByteArray();
+    }
+
+    private int buildFieldMask(Message message) {
+        int fieldMask = 0;
+        if (message.getMessageText() != null) {
+            fieldMask |= MESSAGE_TEXT_FIELD;
+        }
+        if (message.getConnectedUsernames() != null) {
+            fieldMask |= CONNECTED_USERNAMES_FIELD;
+        }
+        if (message.getHandshakeOptions() != null) {
+            fieldMask |= HANDSHAKE_OPTIONS_FIELD;
+        }
+        if (message.getSenderUsername() != null) {
+            fieldMask |= SENDER_USERNAME_FIELD;
+        }
+        if (message.getSequenceNumber() != null) {
+            fieldMask |= SEQUENCE_NUMBER_FIELD;
+        }
+        if (message.getTimestampMillis() != null) {
+            fieldMask |= TIMESTAMP_MILLIS_FIELD;
+        }
+        if (message.getRoomName() != null) {
+            fieldMask |= ROOM_NAME_FIELD;
+        }
+        if (message.getRoomNames() != null) {
+            fieldMask |= ROOM_NAMES_FIELD;
+        }
+        if (message.getRecipientUsername() != null) {
+            fieldMask |= RECIPIENT_USERNAME_FIELD;
+        }
+        if (message.getRosterVersion() != null) {
+            fieldMask |= ROSTER_VERSION_FIELD;
+        }
+        if (message.getBaseRosterVersion() != null) {
+            fieldMask |= BASE_ROSTER_VERSION_FIELD;
+        }
+        if (message.getDisconnectedUsernames() != null) {
+            fieldMask |= DISCONNECTED_USERNAMES_FIELD;
+        }
+        return fieldMask;
+    }
+
+    @Override
+    public Message decode(InputStream inputStream) throws IOException {
+        return decode(inputStream, null);
+    }
+
+    @Override
+    public Message decode(ByteBuffer buffer) throws IOException {
+        return decode(buffer, null);
+    }
+
+    @Override
+    public Message decode(InputStream inputStream, FrameCompression frameCompression) throws IOException {
+        int bodyLength = readVarInt(inputStream);
+        checkFrameLength(bodyLength);
+        byte[] body = new byte[bodyLength];
+        new DataInputStream(inputStream).readFully(body);
+        return decodeBody(ByteBuffer.wrap(body), frameCompression);
+    }
+
+    @Override
+    public Message decode(ByteBuffer buffer, FrameCompression frameCompression) throws IOException {
+        int frameStart = buffer.position();
+        int bodyLength;
+        try {
+            bodyLength = readVarInt(buffer);
+        } catch (BufferUnderflowException exception) {
+            buffer.position(frameStart);
+            return null;
+        }
+        checkFrameLength(bodyLength);
+        if (buffer.remaining() < bodyLength) {
+            buffer.position(frameStart);
+            return null;
+        }
+        ByteBuffer body = buffer.slice(buffer.position(), bodyLength);
+        buffer.position(buffer.position() + bodyLength);
+        return decodeBody(body, frameCompression);
+    }
+
+    private Message decodeBody(ByteBuffer body, FrameCompression frameCompression) throws IOException {
+        try {
+            byte frameFlags = body.get();
+            if (frameFlags == COMPRESSED_FRAME_FLAGS && frameCompression != null) {
+                body = frameCompression.inflateBody(body);
+            } else if (frameFlags != PLAIN_FRAME_FLAGS) {
+                throw new IOException("Unsupported frame flags");
+            }
+            int messageTypeOrdinal = Byte.toUnsignedInt(body.get());
+            int fieldMask = readVarInt(body);
+
+            Message.MessageBuilder messageBuilder = Message.builder()
+                    .messageType(messageTypeOrdinal < MESSAGE_TYPES.length ? MESSAGE_TYPES[messageTypeOrdinal] : null);
+            if ((fieldMask & MESSAGE_TEXT_FIELD) != 0) {
+                messageBuilder.messageText(readString(body));
+            }
+            if ((fieldMask & CONNECTED_USERNAMES_FIELD) != 0) {
+                messageBuilder.connectedUsernames(readStrings(body));
+            }
+            if ((fieldMask & HANDSHAKE_OPTIONS_FIELD) != 0) {
+                int optionsNumber = readVarInt(body);
+                Map<String, String> handshakeOptions = new HashMap<>();
+                for (int i = 0; i < optionsNumber; i++) {
+                    handshakeOptions.put(readString(body), readString(body));
+                }
+                messageBuilder.handshakeOptions(handshakeOptions);
+            }
+            if ((fieldMask & SENDER_USERNAME_FIELD) != 0) {
+                messageBuilder.senderUsername(readString(body));
+            }
+            if ((fieldMask & SEQUENCE_NUMBER_FIELD) != 0) {
+                messageBuilder.sequenceNumber(readVarLong(body));
+            }
+            if ((fieldMask & TIMESTAMP_MILLIS_FIELD) != 0) {
+                messageBuilder.timestampMillis(readVarLong(body));
+            }
+            if ((fieldMask & ROOM_NAME_FIELD) != 0) {
+                messageBuilder.roomName(readString(body));
+            }
+            if ((fieldMask & ROOM_NAMES_FIELD) != 0) {
+                messageBuilder.roomNames(readStrings(body));
+            }
+            if ((fieldMask & RECIPIENT_USERNAME_FIELD) != 0) {
+                messageBuilder.recipientUsername(readString(body));
+            }
+            if ((fieldMask & ROSTER_VERSION_FIELD) != 0) {
+                messageBuilder.rosterVersion(readVarLong(body));
+            }
+            if ((fieldMask & BASE_ROSTER_VERSION_FIELD) != 0) {
+                messageBuilder.baseRosterVersion(readVarLong(body));
+            }
+            if ((fieldMask & DISCONNECTED_USERNAMES_FIELD) != 0) {
+                messageBuilder.disconnectedUsernames(readStrings(body));
+            }
+            return messageBuilder.build();
+        } catch (BufferUnderflowException exception) {
+            throw new IOException("Truncated message frame", exception);
+        }
+    }
+
+    private static void checkFrameLength(int frameLength) throws IOException {
+        if (frameLength < 0 || frameLength > MAX_FRAME_LENGTH) {
+            throw new IOException("Message frame is too long");
+        }
+    }
+
+    private static void writeString(ByteArrayOutputStream outputStream, String value) {
+        byte[] valueBytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(outputStream, valueBytes.length);
+        outputStream.writeBytes(valueBytes);
+    }
+
+    private static void writeStrings(ByteArrayOutputStream outputStream, Set<String> values) {
+        writeVarInt(outputStream, values.size());
+        for (String value : values) {
+            writeString(outputStream, value);
+        }
+    }
+
+    private static Set<String> readStrings(ByteBuffer buffer) throws IOException {
+        int valuesNumber = readVarInt(buffer);
+        if (valuesNumber < 0 || valuesNumber > buffer.remaining()) {
+            throw new IOException("Truncated message frame");
+        }
+        Set<String> values = new HashSet<>();
+        for (int i = 0; i < valuesNumber; i++) {
+            values.add(readString(buffer));
+        }
+        return values;
+    }
+
+    private static String readString(ByteBuffer buffer) throws IOException {
+        int length = readVarInt(buffer);
+        if (length > buffer.remaining()) {
+            throw new IOException("Truncated message frame");
+        }
+        String value = buffer.hasArray()
+                ? new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8)
+                : StandardCharsets.UTF_8.decode(buffer.slice(buffer.position(), length)).toString();
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    static void writeVarInt(ByteArrayOutputStream outputStream, int value) {
+        while ((value & ~0x7F) != 0) {
+            outputStream.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        outputStream.write(value);
+    }
+
+    static void writeVarLong(ByteArrayOutputStream outputStream, long value) {
+        while ((value & ~0x7FL) != 0) {
+            outputStream.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        outputStream.write((int) value);
+    }
+
+    static long readVarLong(ByteBuffer buffer) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte nextByte = buffer.get();
+            value |= (long) (nextByte & 0x7F) << shift;
+            if ((nextByte & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varlong");
+    }
+
+    static int readVarInt(ByteBuffer buffer) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte nextByte = buffer.get();
+            value |= (nextByte & 0x7F) << shift;
+            if ((nextByte & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    static int readVarInt(InputStream inputStream) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int nextByte = inputStream.read();
+            if (nextByte < 0) {
+                throw new EOFException("Connection was closed by the remote side");
+            }
+            value |= (nextByte & 0x7F) << shift;
+            if ((nextByte & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+}
@@ -1,4 +1,4 @@
 package connection;
 
-public record ChatUserRecord(UserConnection userConnection, String username) {
+public record ChatUserRecord(MessageConnection userConnection, String username, UserMetaInfo metaInfo) {
 }
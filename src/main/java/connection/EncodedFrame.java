@@ -0,0 +1,46 @@
+package connection;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+public final class EncodedFrame {
+    private final Message message;
+    private final AtomicReferenceArray<byte[]> frameBytesByCodec = new AtomicReferenceArray<>(MessageCodecType.values().length);
+
+    private EncodedFrame(Message message) {
+        this.message = message;
+    }
+
+    public static EncodedFrame encode(Message message) {
+        return new EncodedFrame(message);
+    }
+
+    public Message getMessage() {
+        return message;
+    }
+
+    public int getLength(MessageCodecType codecType) {
+        return getFrameBytes(codecType).length;
+    }
+
+    public ByteBuffer asByteBuffer(MessageCodecType codecType) {
+        return ByteBuffer.wrap(getFrameBytes(codecType)).asReadOnlyBuffer();
+    }
+
+    public void writeTo(OutputStream outputStream, MessageCodecType codecType) throws IOException {
+        outputStream.write(getFrameBytes(codecType));
+    }
+
+    private byte[] getFrameBytes(MessageCodecType codecType) {
+        byte[] frameBytes = frameBytesByCodec.get(codecType.ordinal());
+        if (frameBytes == null) {
+            frameBytes = codecType.getCodec().encode(message);
+            if (!frameBytesByCodec.compareAndSet(codecType.ordinal(), null, frameBytes)) {
+                frameBytes = frameBytesByCodec.get(codecType.ordinal());
+            }
+        }
+        return frameBytes;
+    }
+}
@@ -0,0 +1,129 @@
+package connection;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Per-connection deflate context for binary frames. Both directions keep one stream for the whole connection
+ * and end every frame with a sync flush, so later messages reuse the window of earlier ones.
+ * The streams are created on the first frame above the threshold.
+ */
+public class FrameCompression {
+    public static final String SUPPORTED_COMPRESSIONS_OPTION = "compressions";
+    public static final String SELECTED_COMPRESSION_OPTION = "compression";
+    public static final String DEFLATE_COMPRESSION_NAME = "deflate";
+    public static final int DEFAULT_THRESHOLD_BYTES = 1024;
+
+    private static final int COMPRESSION_CHUNK_SIZE = 4096;
+
+    private final int thresholdBytes;
+    private Deflater deflater;
+    private Inflater inflater;
+    private boolean isClosed;
+
+    public FrameCompression(int thresholdBytes) {
+        this.thresholdBytes = thresholdBytes;
+    }
+
+    public static boolean isDeflateSupported(String supportedCompressionNames) {
+        if (supportedCompressionNames == null) {
+            return false;
+        }
+        for (String compressionName : supportedCompressionNames.split(",")) {
+            if (compressionName.trim().equals(DEFLATE_COMPRESSION_NAME)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean shouldCompress(MessageCodecType codecType, int frameLength) {
+        return codecType == MessageCodecType.BINARY && frameLength >= thresholdBytes;
+    }
+
+    public synchronized ByteBuffer compressFrame(ByteBuffer plainFrame) throws IOException {
+        checkNotClosed();
+        if (deflater == null) {
+            deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        }
+        ByteBuffer body = plainFrame.duplicate();
+        BinaryMessageCodec.readVarInt(body);
+        if (body.get() != BinaryMessageCodec.PLAIN_FRAME_FLAGS) {
+            throw new IOException("The frame is already compressed");
+        }
+        deflater.setInput(body);
+        ByteArrayOutputStream compressedBody = new ByteArrayOutputStream(plainFrame.remaining() / 2 + 16);
+        compressedBody.write(BinaryMessageCodec.COMPRESSED_FRAME_FLAGS);
+        byte[] chunk = new byte[COMPRESSION_CHUNK_SIZE];
+        int compressedBytesNumber;
+        do {
+            compressedBytesNumber = deflater.deflate(chunk, 0, chunk.length, Deflater.SYNC_FLUSH);
+            compressedBody.write(chunk, 0, compressedBytesNumber);
+        } while (compressedBytesNumber == chunk.length);
+
+        ByteArrayOutputStream compressedFrame = new ByteArrayOutputStream(compressedBody.size() + 5);
+        BinaryMessageCodec.writeVarInt(compressedFrame, compressedBody.size());
+        compressedBody.writeTo(compressedFrame);
+        return ByteBuffer.wrap(compressedFrame.toByteArray());
+    }
+
+    public synchronized ByteBuffer inflateBody(ByteBuffer compressedBody) throws IOException {
+        checkNotClosed();
+        if (inflater == null) {
+            inflater = new Inflater(true);
+        }
+        inflater.setInput(compressedBody);
+        byte[] body = new byte[Math.min(Math.max(COMPRESSION_CHUNK_SIZE, compressedBody.remaining() * 4), MessageCodec.MAX_FRAME_LENGTH)];
+        int bodyLength = 0;
+        try {
+            while (true) {
+                bodyLength += inflater.inflate(body, bodyLength, body.length - bodyLength);
+                if (bodyLength < body.length) {
+                    if (inflater.needsInput()) {
+                        break;
+                    }
+                    throw new IOException("Malformed compressed frame");
+                }
+                if (body.length >= MessageCodec.MAX_FRAME_LENGTH) {
+                    if (hasPendingInflatedBytes()) {
+                        throw new IOException("Message frame is too long");
+                    }
+                    break;
+                }
+                body = Arrays.copyOf(body, Math.min(body.length * 2, MessageCodec.MAX_FRAME_LENGTH));
+            }
+        } catch (DataFormatException exception) {
+            throw new IOException("Malformed compressed frame", exception);
+        }
+        return ByteBuffer.wrap(body, 0, bodyLength);
+    }
+
+    /**
+     * A full output buffer does not mean the frame is longer: it may end exactly at the buffer end,
+     * followed only by the empty block of the sync flush.
+     */
+    private boolean hasPendingInflatedBytes() throws DataFormatException {
+        return inflater.inflate(new byte[1]) > 0 || !(inflater.needsInput() || inflater.finished());
+    }
+
+    private void checkNotClosed() throws IOException {
+        if (isClosed) {
+            throw new IOException("Frame compression is closed");
+        }
+    }
+
+    public synchronized void close() {
+        isClosed = true;
+        if (deflater != null) {
+            deflater.end();
+        }
+        if (inflater != null) {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package connection;
+
+import com.google.gson.Gson;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+public class JsonMessageCodec implements MessageCodec {
+    private static final byte LINE_DELIMITER = '\n';
+
+    private final Gson gson = new Gson();
+
+    @Override
+    public byte[] encode(Message message) {
+        return (gson.toJson(message) + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public Message decode(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream lineBytes = new ByteArrayOutputStream();
+        int nextByte;
+        while ((nextByte = inputStream.read()) != LINE_DELIMITER) {
+            if (nextByte < 0) {
+                throw new EOFException("Connection was closed by the remote side");
+            }
+            if (lineBytes.size() >= MAX_FRAME_LENGTH) {
+                throw new IOException("Message frame is too long");
+            }
+            lineBytes.write(nextByte);
+        }
+        return decodeLine(lineBytes.toString(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public Message decode(ByteBuffer buffer) throws IOException {
+        return decode(buffer, null, 0);
+    }
+
+    @Override
+    public Message decode(ByteBuffer buffer, FrameCompression frameCompression, int scannedBytesNumber) throws IOException {
+        int lineStart = buffer.position();
+        for (int i = lineStart + scannedBytesNumber; i < buffer.limit(); i++) {
+            if (buffer.get(i) == LINE_DELIMITER) {
+                byte[] lineBytes = new byte[i - lineStart];
+                buffer.get(lineBytes);
+                buffer.get();
+                return decodeLine(new String(lineBytes, StandardCharsets.UTF_8));
+            }
+        }
+        if (buffer.remaining() >= MAX_FRAME_LENGTH) {
+            throw new IOException("Message frame is too long");
+        }
+        return null;
+    }
+
+    private Message decodeLine(String jsonMessage) throws IOException {
+        Message message = gson.fromJson(jsonMessage, Message.class);
+        if (message == null) {
+            throw new IOException("Empty message frame");
+        }
+        return message;
+    }
+}
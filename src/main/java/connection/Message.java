@@ -1,29 +1,70 @@
 package connection;
 
+import lombok.Builder;
+
 import java.io.Serializable;
+import java.util.Map;
 import java.util.Set;
 
 public class Message implements Serializable {
+    public static final String DEFAULT_ROOM_NAME = "general";
+    public static final String PRESENCE_MODE_OPTION = "presence";
+    public static final String DELTA_PRESENCE_MODE = "delta";
+    public static final String PASSWORD_OPTION = "password";
+
     private final MessageType messageType;
     private final String messageText;
     private final Set<String> connectedUsernames;
+    private final Map<String, String> handshakeOptions;
+    private final String senderUsername;
+    private final Long sequenceNumber;
+    private final Long timestampMillis;
+    private final String roomName;
+    private final Set<String> roomNames;
+    private final String recipientUsername;
+    private final Long rosterVersion;
+    private final Long baseRosterVersion;
+    private final Set<String> disconnectedUsernames;
 
-    public Message(MessageType messageType, String messageText) {
-        this.messageText = messageText;
+    @Builder
+    private Message(MessageType messageType,
+                    String messageText,
+                    Set<String> connectedUsernames,
+                    Map<String, String> handshakeOptions,
+                    String senderUsername,
+                    Long sequenceNumber,
+                    Long timestampMillis,
+                    String roomName,
+                    Set<String> roomNames,
+                    String recipientUsername,
+                    Long rosterVersion,
+                    Long baseRosterVersion,
+                    Set<String> disconnectedUsernames) {
         this.messageType = messageType;
-        this.connectedUsernames = null;
+        this.messageText = messageText;
+        this.connectedUsernames = connectedUsernames;
+        this.handshakeOptions = handshakeOptions;
+        this.senderUsername = senderUsername;
+        this.sequenceNumber = sequenceNumber;
+        this.timestampMillis = timestampMillis;
+        this.roomName = roomName;
+        this.roomNames = roomNames;
+        this.recipientUsername = recipientUsername;
+        this.rosterVersion = rosterVersion;
+        this.baseRosterVersion = baseRosterVersion;
+        this.disconnectedUsernames = disconnectedUsernames;
+    }
+
+    public Message(MessageType messageType, String messageText) {
+        this(messageType, messageText, null, null, null, null, null, null, null, null, null, null, null);
     }
 
     public Message(MessageType messageType, Set<String> connectedUsernames) {
-        this.messageType = messageType;
-        this.messageText = null;
-        this.connectedUsernames = connectedUsernames;
+        this(messageType, null, connectedUsernames, null, null, null, null, null, null, null, null, null, null);
     }
 
     public Message(MessageType messageType) {
-        this.messageType = messageType;
-        this.messageText = null;
-        this.connectedUsernames = null;
+        this(messageType, null, null, null, null, null, null, null, null, null, null, null, null);
     }
 
     public MessageType getMessageType() {
@@ -38,4 +79,47 @@ public class Message implements Serializable {
         return messageText;
     }
 
+    public Map<String, String> getHandshakeOptions() {
+        return handshakeOptions;
+    }
+
+    public String getSenderUsername() {
+        return senderUsername;
+    }
+
+    public Long getSequenceNumber() {
+        return sequenceNumber;
+    }
+
+    public Long getTimestampMillis() {
+        return timestampMillis;
+    }
+
+    public String getRoomName() {
+        return roomName;
+    }
+
+    public Set<String> getRoomNames() {
+        return roomNames;
+    }
+
+    public String getRecipientUsername() {
+        return recipientUsername;
+    }
+
+    public Long getRosterVersion() {
+        return rosterVersion;
+    }
+
+    public Long getBaseRosterVersion() {
+        return baseRosterVersion;
+    }
+
+    public Set<String> getDisconnectedUsernames() {
+        return disconnectedUsernames;
+    }
+
+    public String getHandshakeOption(String optionName) {
+        return handshakeOptions == null ? null : handshakeOptions.get(optionName);
+    }
 }
@@ -0,0 +1,31 @@
+package connection;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+public interface MessageCodec {
+    int MAX_FRAME_LENGTH = 1024 * 1024;
+
+    byte[] encode(Message message);
+
+    Message decode(InputStream inputStream) throws IOException;
+
+    Message decode(ByteBuffer buffer) throws IOException;
+
+    default Message decode(InputStream inputStream, FrameCompression frameCompression) throws IOException {
+        return decode(inputStream);
+    }
+
+    default Message decode(ByteBuffer buffer, FrameCompression frameCompression) throws IOException {
+        return decode(buffer);
+    }
+
+    /**
+     * Decodes like {@link #decode(ByteBuffer, FrameCompression)} when the first {@code scannedBytesNumber} remaining
+     * bytes were already searched for the end of the frame by a call that returned null, so they aren't searched again.
+     */
+    default Message decode(ByteBuffer buffer, FrameCompression frameCompression, int scannedBytesNumber) throws IOException {
+        return decode(buffer, frameCompression);
+    }
+}
@@ -0,0 +1,57 @@
+package connection;
+
+public enum MessageCodecType {
+    JSON("json", new JsonMessageCodec()),
+    BINARY("binary", new BinaryMessageCodec());
+
+    public static final String SUPPORTED_CODECS_OPTION = "codecs";
+    public static final String SELECTED_CODEC_OPTION = "codec";
+
+    private final String codecName;
+    private final MessageCodec codec;
+
+    MessageCodecType(String codecName, MessageCodec codec) {
+        this.codecName = codecName;
+        this.codec = codec;
+    }
+
+    public String getCodecName() {
+        return codecName;
+    }
+
+    public MessageCodec getCodec() {
+        return codec;
+    }
+
+    public static MessageCodecType fromCodecName(String codecName) {
+        for (MessageCodecType codecType : values()) {
+            if (codecType.codecName.equals(codecName)) {
+                return codecType;
+            }
+        }
+        return null;
+    }
+
+    public static String buildSupportedCodecNames() {
+        StringBuilder codecNames = new StringBuilder();
+        for (MessageCodecType codecType : values()) {
+            if (!codecNames.isEmpty()) {
+                codecNames.append(',');
+            }
+            codecNames.append(codecType.codecName);
+        }
+        return codecNames.toString();
+    }
+
+    public static boolean isCodecSupported(String supportedCodecNames, MessageCodecType codecType) {
+        if (supportedCodecNames == null) {
+            return false;
+        }
+        for (String codecName : supportedCodecNames.split(",")) {
+            if (codecName.trim().equals(codecType.codecName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,52 @@
+package connection;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public interface MessageConnection extends Closeable {
+    void send(EncodedFrame frame);
+
+    default void send(Message message) {
+        send(EncodedFrame.encode(message));
+    }
+
+    default void sendAll(List<EncodedFrame> frames) {
+        for (EncodedFrame frame : frames) {
+            send(frame);
+        }
+    }
+
+    default int getQueuedFramesNumber() {
+        return 0;
+    }
+
+    MessageCodecType getMessageCodecType();
+
+    void setMessageCodecType(MessageCodecType codecType);
+
+    void setFrameCompression(FrameCompression frameCompression);
+
+    SocketAddress getRemoteSocketAddress();
+
+    /**
+     * Closes the connection at once and drops the frames that are still queued;
+     * {@link #closeGracefully()} writes them first.
+     */
+    @Override
+    void close() throws IOException;
+
+    /**
+     * Stops reading, writes the frames queued so far and then closes the connection.
+     * The returned future completes once the connection is closed.
+     */
+    default CompletableFuture<Void> closeGracefully() {
+        try {
+            close();
+        } catch (IOException ignored) {
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+}
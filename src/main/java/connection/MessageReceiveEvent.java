@@ -0,0 +1,27 @@
+package connection;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+@Name("chat.MessageReceive")
+@Label("Message Receive")
+@Category({"Chat", "Connection"})
+@Threshold("1 ms")
+public class MessageReceiveEvent extends Event {
+    @Label("Remote Address")
+    public String remoteAddress;
+
+    @Label("Message Type")
+    public String messageType;
+
+    @Label("Codec")
+    public String codecType;
+
+    @Label("Frame Size")
+    @DataAmount
+    public long bytesNumber;
+}
@@ -0,0 +1,30 @@
+package connection;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+@Name("chat.MessageSend")
+@Label("Message Send")
+@Category({"Chat", "Connection"})
+@Threshold("1 ms")
+public class MessageSendEvent extends Event {
+    @Label("Remote Address")
+    public String remoteAddress;
+
+    @Label("Message Type")
+    public String messageType;
+
+    @Label("Codec")
+    public String codecType;
+
+    @Label("Frames Written")
+    public int framesNumber;
+
+    @Label("Bytes Written")
+    @DataAmount
+    public long bytesNumber;
+}
@@ -12,7 +12,19 @@ public enum MessageType {
     DISCONNECT,
     USER_DELETED,
     NOTIFY_ADD,
-    NOTIFY_REMOVE;
+    NOTIFY_REMOVE,
+    JOIN_ROOM,
+    LEAVE_ROOM,
+    LIST_ROOMS,
+    ERROR,
+    PRIVATE_MESSAGE,
+    PRESENCE_DELTA,
+    PRESENCE_SNAPSHOT,
+    THROTTLE,
+    PING,
+    PONG,
+    LOGIN_REQUEST,
+    SERVER_SHUTDOWN;
 
     public static boolean isTypeNewUsername(MessageType messageType) {
         return messageType == NEW_USERNAME;
@@ -62,4 +74,58 @@ public enum MessageType {
         return messageType == USER_DELETED;
     }
 
-}
\ No newline at end of file
+    public static boolean isTypeJoinRoom(MessageType messageType) {
+        return messageType == JOIN_ROOM;
+    }
+
+    public static boolean isTypeLeaveRoom(MessageType messageType) {
+        return messageType == LEAVE_ROOM;
+    }
+
+    public static boolean isTypeListRooms(MessageType messageType) {
+        return messageType == LIST_ROOMS;
+    }
+
+    public static boolean isTypeError(MessageType messageType) {
+        return messageType == ERROR;
+    }
+
+    public static boolean isTypePrivateMessage(MessageType messageType) {
+        return messageType == PRIVATE_MESSAGE;
+    }
+
+    public static boolean isTypePresenceDelta(MessageType messageType) {
+        return messageType == PRESENCE_DELTA;
+    }
+
+    public static boolean isTypePresenceSnapshot(MessageType messageType) {
+        return messageType == PRESENCE_SNAPSHOT;
+    }
+
+    public static boolean isTypeThrottle(MessageType messageType) {
+        return messageType == THROTTLE;
+    }
+
+    public static boolean isTypePing(MessageType messageType) {
+        return messageType == PING;
+    }
+
+    public static boolean isTypePong(MessageType messageType) {
+        return messageType == PONG;
+    }
+
+    public static boolean isTypeLoginRequest(MessageType messageType) {
+        return messageType == LOGIN_REQUEST;
+    }
+
+    public static boolean isTypeServerShutdown(MessageType messageType) {
+        return messageType == SERVER_SHUTDOWN;
+    }
+
+    /**
+     * Messages that users generate themselves and that the rate limits charge; heartbeats and queries are never throttled.
+     */
+    public static boolean isTypeRateLimited(MessageType messageType) {
+        return messageType == TEXT_MESSAGE || messageType == PRIVATE_MESSAGE || messageType == JOIN_ROOM;
+    }
+}
@@ -1,44 +1,226 @@
 package connection;
 
-import com.google.gson.Gson;
-
 import java.io.*;
 import java.net.Socket;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
-public class UserConnection implements Closeable {
+public class UserConnection implements MessageConnection {
     private final Socket userSocket;
 
-    private final PrintWriter printWriter;
-    private final BufferedReader bufferedReader;
+    private final ByteCountingOutputStream countingOutputStream;
+    private final ByteCountingInputStream countingInputStream;
+    private final OutputStream outputStream;
+    private final InputStream inputStream;
+
+    private final Lock sendLock = new ReentrantLock();
+    private final Lock receiveLock = new ReentrantLock();
 
-    private final Gson gson = new Gson();
+    private volatile MessageCodecType codecType = MessageCodecType.JSON;
+    private volatile FrameCompression frameCompression;
 
     public UserConnection(Socket userSocket) throws IOException {
         this.userSocket = userSocket;
-        this.printWriter = new PrintWriter(new DataOutputStream(userSocket.getOutputStream()));
-        this.bufferedReader = new BufferedReader(new InputStreamReader(new DataInputStream(userSocket.getInputStream())));
+        this.countingOutputStream = new ByteCountingOutputStream(userSocket.getOutputStream());
+        this.countingInputStream = new ByteCountingInputStream(userSocket.getInputStream());
+        this.outputStream = new BufferedOutputStream(countingOutputStream);
+        this.inputStream = new BufferedInputStream(countingInputStream);
+    }
+
+    public long getSentBytesNumber() {
+        return countingOutputStream.bytesNumber;
+    }
+
+    public long getReceivedBytesNumber() {
+        return countingInputStream.bytesNumber;
+    }
+
+    @Override
+    public void send(EncodedFrame frame) {
+        send(frame, codecType, frameCompression);
     }
 
-    public void send(Message message) {
-        synchronized (printWriter) {
-            String jsonMessage = gson.toJson(message);
-            printWriter.write(jsonMessage);
-            printWriter.write("\n");
-            printWriter.flush();
+    /**
+     * Writes a frame with the codec and compression the frame was queued with, which may be older
+     * than the current ones when the codec was switched after the frame was queued.
+     */
+    public void send(EncodedFrame frame, MessageCodecType frameCodecType, FrameCompression frameCompression) {
+        MessageSendEvent sendEvent = new MessageSendEvent();
+        sendEvent.begin();
+        sendLock.lock();
+        try {
+            long sentBytesNumber = countingOutputStream.bytesNumber;
+            writeFrame(frame, frameCodecType, frameCompression);
+            outputStream.flush();
+            commitSendEvent(sendEvent, frame.getMessage(), frameCodecType, 1, countingOutputStream.bytesNumber - sentBytesNumber);
+        } catch (IOException ignored) {
+        } finally {
+            sendLock.unlock();
         }
     }
 
+    @Override
+    public void sendAll(List<EncodedFrame> frames) {
+        sendAll(frames, codecType, frameCompression);
+    }
+
+    public void sendAll(List<EncodedFrame> frames, MessageCodecType frameCodecType, FrameCompression frameCompression) {
+        MessageSendEvent sendEvent = new MessageSendEvent();
+        sendEvent.begin();
+        sendLock.lock();
+        try {
+            long sentBytesNumber = countingOutputStream.bytesNumber;
+            for (EncodedFrame frame : frames) {
+                writeFrame(frame, frameCodecType, frameCompression);
+            }
+            outputStream.flush();
+            commitSendEvent(sendEvent, frames.size() == 1 ? frames.get(0).getMessage() : null, frameCodecType,
+                    frames.size(), countingOutputStream.bytesNumber - sentBytesNumber);
+        } catch (IOException ignored) {
+        } finally {
+            sendLock.unlock();
+        }
+    }
+
+    private void commitSendEvent(MessageSendEvent sendEvent, Message message, MessageCodecType frameCodecType,
+                                 int framesNumber, long bytesNumber) {
+        sendEvent.end();
+        if (sendEvent.shouldCommit()) {
+            sendEvent.remoteAddress = String.valueOf(getRemoteSocketAddress());
+            sendEvent.messageType = message == null ? null : String.valueOf(message.getMessageType());
+            sendEvent.codecType = frameCodecType.name();
+            sendEvent.framesNumber = framesNumber;
+            sendEvent.bytesNumber = bytesNumber;
+            sendEvent.commit();
+        }
+    }
+
+    private void writeFrame(EncodedFrame frame, MessageCodecType frameCodecType, FrameCompression frameCompression) throws IOException {
+        if (frameCompression == null || !frameCompression.shouldCompress(frameCodecType, frame.getLength(frameCodecType))) {
+            frame.writeTo(outputStream, frameCodecType);
+            return;
+        }
+        ByteBuffer compressedFrame = frameCompression.compressFrame(frame.asByteBuffer(frameCodecType));
+        outputStream.write(compressedFrame.array(), compressedFrame.arrayOffset() + compressedFrame.position(), compressedFrame.remaining());
+    }
+
     public Message receive() throws IOException {
-        synchronized (bufferedReader) {
-            String jsonMessage = bufferedReader.readLine();
-            return gson.fromJson(jsonMessage, Message.class);
+        MessageReceiveEvent receiveEvent = new MessageReceiveEvent();
+        receiveEvent.begin();
+        receiveLock.lock();
+        try {
+            long receivedBytesNumber = countingInputStream.bytesNumber;
+            Message message = codecType.getCodec().decode(inputStream, frameCompression);
+            receiveEvent.end();
+            if (receiveEvent.shouldCommit()) {
+                receiveEvent.remoteAddress = String.valueOf(getRemoteSocketAddress());
+                receiveEvent.messageType = message == null ? null : String.valueOf(message.getMessageType());
+                receiveEvent.codecType = codecType.name();
+                receiveEvent.bytesNumber = countingInputStream.bytesNumber - receivedBytesNumber;
+                receiveEvent.commit();
+            }
+            return message;
+        } finally {
+            receiveLock.unlock();
         }
     }
 
+    @Override
+    public MessageCodecType getMessageCodecType() {
+        return codecType;
+    }
+
+    @Override
+    public void setMessageCodecType(MessageCodecType codecType) {
+        this.codecType = codecType;
+    }
+
+    @Override
+    public void setFrameCompression(FrameCompression frameCompression) {
+        this.frameCompression = frameCompression;
+    }
+
+    @Override
+    public SocketAddress getRemoteSocketAddress() {
+        return userSocket.getRemoteSocketAddress();
+    }
+
+    /**
+     * Closes the socket first, which wakes up a sender or receiver blocked on it, and then releases the compression
+     * state under both locks, so no frame that is being written or read meets an ended deflater or inflater.
+     */
     @Override
     public void close() throws IOException {
-        userSocket.shutdownOutput();
-        userSocket.shutdownInput();
-        userSocket.close();
+        try {
+            userSocket.shutdownOutput();
+            userSocket.shutdownInput();
+        } finally {
+            userSocket.close();
+            releaseFrameCompression();
+        }
+    }
+
+    private void releaseFrameCompression() {
+        FrameCompression currentFrameCompression = frameCompression;
+        if (currentFrameCompression == null) {
+            return;
+        }
+        sendLock.lock();
+        receiveLock.lock();
+        try {
+            currentFrameCompression.close();
+        } finally {
+            receiveLock.unlock();
+            sendLock.unlock();
+        }
+    }
+
+    private static class ByteCountingOutputStream extends FilterOutputStream {
+        private volatile long bytesNumber;
+
+        private ByteCountingOutputStream(OutputStream outputStream) {
+            super(outputStream);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            bytesNumber++;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            out.write(bytes, offset, length);
+            bytesNumber += length;
+        }
+    }
+
+    private static class ByteCountingInputStream extends FilterInputStream {
+        private volatile long bytesNumber;
+
+        private ByteCountingInputStream(InputStream inputStream) {
+            super(inputStream);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) {
+                bytesNumber++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            int readBytesNumber = in.read(bytes, offset, length);
+            if (readBytesNumber > 0) {
+                bytesNumber += readBytesNumber;
+            }
+            return readBytesNumber;
+        }
     }
 }
@@ -3,26 +3,64 @@ package connection;
 import lombok.Builder;
 import utilities.FormatMessagesBuilder;
 
-@Builder
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
 public class UserMetaInfo {
     private final String username;
 
-    private final String firstConnectionTime;
+    private final long firstConnectionTimeMillis;
+
+    private final AtomicLong lastMessageTimeMillis;
 
-    private String lastMessageTime;
+    private final LongAdder allSentMessagesNumber = new LongAdder();
 
-    private int allSentMessagesNumber;
+    private volatile boolean isDisconnectedByServer;
+
+    @Builder
+    private UserMetaInfo(String username, long firstConnectionTimeMillis) {
+        this.username = username;
+        this.firstConnectionTimeMillis = firstConnectionTimeMillis;
+        this.lastMessageTimeMillis = new AtomicLong(firstConnectionTimeMillis);
+    }
 
     public void updateLastMessageTime() {
-        lastMessageTime = FormatMessagesBuilder.buildDateNow();
-        allSentMessagesNumber++;
+        lastMessageTimeMillis.accumulateAndGet(System.currentTimeMillis(), Math::max);
+        allSentMessagesNumber.increment();
+    }
+
+    /**
+     * Marks the user as disconnected on the server's initiative, so the lost connection is expected and not an error.
+     */
+    public void markDisconnectedByServer() {
+        isDisconnectedByServer = true;
+    }
+
+    public boolean isDisconnectedByServer() {
+        return isDisconnectedByServer;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public long getFirstConnectionTimeMillis() {
+        return firstConnectionTimeMillis;
+    }
+
+    public long getLastMessageTimeMillis() {
+        return lastMessageTimeMillis.get();
+    }
+
+    public long getAllSentMessagesNumber() {
+        return allSentMessagesNumber.sum();
     }
 
     @Override
     public String toString() {
         return "Username: " + username + "\n" +
-                "First connection time: " + firstConnectionTime + "\n" +
-                "Last message time: " + lastMessageTime + "\n" +
-                "All sent message number: " + allSentMessagesNumber + "\n";
+                "First connection time: " + FormatMessagesBuilder.buildDate(firstConnectionTimeMillis) + "\n" +
+                "Last message time: " + FormatMessagesBuilder.buildDate(getLastMessageTimeMillis()) + "\n" +
+                "All sent message number: " + getAllSentMessagesNumber() + "\n";
     }
 }
@@ -0,0 +1,214 @@
+package server;
+
+import connection.EncodedFrame;
+import connection.FrameCompression;
+import connection.MessageCodecType;
+import connection.MessageConnection;
+import connection.UserConnection;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class AsyncUserConnection implements MessageConnection {
+    /**
+     * Only wakes up a writer thread blocked on an empty queue; the drain itself is requested by
+     * {@code isDrainRequested}, so the marker may be evicted by the DROP_OLDEST policy without losing it.
+     */
+    private static final QueuedFrame DRAIN_MARKER = new QueuedFrame(null, null, null);
+
+    private final ServerController serverController;
+    private final UserConnection userConnection;
+    private final OutboundQueue<QueuedFrame> outboundQueue;
+    private final int writeBatchMaxBytes;
+    private final long writeBatchWindowNanos;
+    private final ServerMetrics serverMetrics;
+    private final Thread writerThread;
+    private final AtomicBoolean isClosed = new AtomicBoolean(false);
+    private final CompletableFuture<Void> closeFuture = new CompletableFuture<>();
+    private volatile MessageCodecType codecType;
+    private volatile FrameCompression frameCompression;
+    private volatile boolean isDrainRequested = false;
+    private QueuedFrame nextQueuedFrame;
+
+    public AsyncUserConnection(ServerController serverController,
+                               UserConnection userConnection,
+                               ServerSettings serverSettings,
+                               ThreadFactory writerThreadFactory) {
+        this.serverController = serverController;
+        this.userConnection = userConnection;
+        this.codecType = userConnection.getMessageCodecType();
+        this.outboundQueue = new OutboundQueue<>(serverSettings.getOutboundQueueHighWaterMark(), serverSettings.getOverflowPolicy());
+        this.writeBatchMaxBytes = serverSettings.getWriteBatchMaxBytes();
+        this.writeBatchWindowNanos = TimeUnit.MICROSECONDS.toNanos(serverSettings.getWriteBatchWindowMicros());
+        this.serverMetrics = serverController.getServerMetrics();
+        this.writerThread = writerThreadFactory.newThread(this::drainOutboundQueue);
+        this.writerThread.start();
+    }
+
+    /**
+     * Queues the frame with the codec and compression selected at this moment, so a codec switch during
+     * the handshake only applies to frames queued after it, however far behind the writer thread is.
+     */
+    @Override
+    public void send(EncodedFrame frame) {
+        if (isClosed.get()) {
+            return;
+        }
+        if (!outboundQueue.offer(new QueuedFrame(frame, codecType, frameCompression))) {
+            disconnectSlowConsumer();
+        }
+    }
+
+    private void drainOutboundQueue() {
+        try {
+            if (writeBatchMaxBytes <= 0) {
+                while (!isClosed.get()) {
+                    QueuedFrame queuedFrame = takeQueuedFrame();
+                    if (queuedFrame == null) {
+                        closeQuietly();
+                        return;
+                    }
+                    long sentBytesNumber = userConnection.getSentBytesNumber();
+                    userConnection.send(queuedFrame.frame(), queuedFrame.codecType(), queuedFrame.frameCompression());
+                    serverMetrics.recordSentMessages(1, userConnection.getSentBytesNumber() - sentBytesNumber);
+                }
+                return;
+            }
+            List<EncodedFrame> writeBatch = new ArrayList<>();
+            while (!isClosed.get()) {
+                QueuedFrame firstQueuedFrame = takeQueuedFrame();
+                if (firstQueuedFrame == null) {
+                    closeQuietly();
+                    return;
+                }
+                long writeBatchBytes = collectWriteBatch(firstQueuedFrame, writeBatch);
+                long sentBytesNumber = userConnection.getSentBytesNumber();
+                userConnection.sendAll(writeBatch, firstQueuedFrame.codecType(), firstQueuedFrame.frameCompression());
+                serverMetrics.recordSentMessages(writeBatch.size(), userConnection.getSentBytesNumber() - sentBytesNumber);
+                serverMetrics.recordWriteBatch(writeBatch.size(), writeBatchBytes);
+                writeBatch.clear();
+            }
+        } catch (InterruptedException ignored) {
+        }
+    }
+
+    /**
+     * @return the next queued frame, or null once a drain was requested and every queued frame is taken
+     */
+    private QueuedFrame takeQueuedFrame() throws InterruptedException {
+        QueuedFrame queuedFrame = nextQueuedFrame;
+        if (queuedFrame != null) {
+            nextQueuedFrame = null;
+            return queuedFrame;
+        }
+        do {
+            queuedFrame = isDrainRequested ? outboundQueue.poll() : outboundQueue.take();
+        } while (queuedFrame == DRAIN_MARKER);
+        return queuedFrame;
+    }
+
+    /**
+     * Collects frames queued with the same codec and compression as the first one; a frame that needs
+     * other settings is kept for the next batch, and the drain marker ends the batch.
+     */
+    private long collectWriteBatch(QueuedFrame firstQueuedFrame, List<EncodedFrame> writeBatch) throws InterruptedException {
+        long writeBatchDeadlineNanos = System.nanoTime() + writeBatchWindowNanos;
+        long writeBatchBytes = 0;
+        QueuedFrame queuedFrame = firstQueuedFrame;
+        while (queuedFrame != null) {
+            if (queuedFrame == DRAIN_MARKER) {
+                break;
+            }
+            if (queuedFrame.codecType() != firstQueuedFrame.codecType()
+                    || queuedFrame.frameCompression() != firstQueuedFrame.frameCompression()) {
+                nextQueuedFrame = queuedFrame;
+                break;
+            }
+            writeBatch.add(queuedFrame.frame());
+            writeBatchBytes += queuedFrame.frame().getLength(queuedFrame.codecType());
+            if (writeBatchBytes >= writeBatchMaxBytes) {
+                break;
+            }
+            queuedFrame = outboundQueue.poll();
+            if (queuedFrame == null && writeBatchWindowNanos > 0) {
+                queuedFrame = outboundQueue.poll(writeBatchDeadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+            }
+        }
+        return writeBatchBytes;
+    }
+
+    private void disconnectSlowConsumer() {
+        serverController.addServiceMessageToServerLogs(
+                "The user with remote address " + getRemoteSocketAddress() + " was disconnected as a slow consumer");
+        closeQuietly();
+    }
+
+    /**
+     * Asks the writer thread to close the connection once the queue is empty, and queues a marker to wake it up.
+     */
+    @Override
+    public CompletableFuture<Void> closeGracefully() {
+        isDrainRequested = true;
+        if (isClosed.get() || !outboundQueue.offer(DRAIN_MARKER)) {
+            closeQuietly();
+        }
+        return closeFuture;
+    }
+
+    private void closeQuietly() {
+        try {
+            close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    @Override
+    public int getQueuedFramesNumber() {
+        return outboundQueue.size();
+    }
+
+    @Override
+    public MessageCodecType getMessageCodecType() {
+        return codecType;
+    }
+
+    @Override
+    public void setMessageCodecType(MessageCodecType codecType) {
+        this.codecType = codecType;
+        userConnection.setMessageCodecType(codecType);
+    }
+
+    @Override
+    public void setFrameCompression(FrameCompression frameCompression) {
+        this.frameCompression = frameCompression;
+        userConnection.setFrameCompression(frameCompression);
+    }
+
+    @Override
+    public SocketAddress getRemoteSocketAddress() {
+        return userConnection.getRemoteSocketAddress();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!isClosed.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            writerThread.interrupt();
+            outboundQueue.clear();
+            userConnection.close();
+        } finally {
+            closeFuture.complete(null);
+        }
+    }
+
+    private record QueuedFrame(EncodedFrame frame, MessageCodecType codecType, FrameCompression frameCompression) {
+    }
+}
@@ -0,0 +1,107 @@
+package server;
+
+import connection.Message;
+import connection.UserConnection;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+public class BlockingServerEngine implements ServerEngine {
+    private final ServerController serverController;
+    private final ServerSettings serverSettings;
+    private final ThreadFactory handlerThreadFactory;
+    private final ThreadFactory writerThreadFactory;
+    private ServerSocket serverSocket;
+
+    public BlockingServerEngine(ServerController serverController,
+                                ServerSettings serverSettings,
+                                ThreadFactory handlerThreadFactory,
+                                ThreadFactory writerThreadFactory) {
+        this.serverController = serverController;
+        this.serverSettings = serverSettings;
+        this.handlerThreadFactory = handlerThreadFactory;
+        this.writerThreadFactory = writerThreadFactory;
+    }
+
+    @Override
+    public void bind(int port) throws IOException {
+        serverSocket = new ServerSocket(port);
+    }
+
+    @Override
+    public void acceptConnections() throws IOException {
+        while (true) {
+            Socket socket = serverSocket.accept();
+            ConnectionAcceptEvent acceptEvent = new ConnectionAcceptEvent();
+            acceptEvent.begin();
+            handlerThreadFactory.newThread(new UserConnectionHandler(socket)).start();
+            acceptEvent.end();
+            if (acceptEvent.shouldCommit()) {
+                acceptEvent.remoteAddress = String.valueOf(socket.getRemoteSocketAddress());
+                acceptEvent.engineType = serverSettings.getEngineType().name();
+                acceptEvent.commit();
+            }
+        }
+    }
+
+    @Override
+    public boolean isClosed() {
+        return serverSocket == null || serverSocket.isClosed();
+    }
+
+    @Override
+    public void stopAccepting() throws IOException {
+        if (serverSocket != null) {
+            serverSocket.close();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        stopAccepting();
+    }
+
+    private class UserConnectionHandler implements Runnable {
+        private final Socket userSocket;
+
+        public UserConnectionHandler(Socket userSocket) {
+            this.userSocket = userSocket;
+        }
+
+        @Override
+        public void run() {
+            serverController.addServiceMessageToServerLogs(
+                    "A new user connected with a remote socket " + userSocket.getRemoteSocketAddress().toString());
+            UserSession userSession = null;
+            try {
+                UserConnection userConnection = new UserConnection(userSocket);
+                AsyncUserConnection asyncUserConnection = new AsyncUserConnection(
+                        serverController, userConnection, serverSettings, writerThreadFactory);
+                userSession = serverController.createUserSession(asyncUserConnection);
+                userSession.start();
+                ServerMetrics serverMetrics = serverController.getServerMetrics();
+                long receivedBytesNumber = 0;
+                while (!userSession.isFinished()) {
+                    Message messageFromUser = userConnection.receive();
+                    serverMetrics.recordReceivedMessage();
+                    serverMetrics.recordReceivedBytes(userConnection.getReceivedBytesNumber() - receivedBytesNumber);
+                    receivedBytesNumber = userConnection.getReceivedBytesNumber();
+                    long throttleNanos;
+                    while ((throttleNanos = userSession.acquireMessagePermit(messageFromUser)) > 0) {
+                        TimeUnit.NANOSECONDS.sleep(throttleNanos);
+                    }
+                    userSession.handleMessage(messageFromUser);
+                }
+            } catch (Exception exception) {
+                if (userSession != null) {
+                    userSession.handleConnectionLost();
+                } else {
+                    serverController.addServiceMessageToServerLogs("An error occurred when sending a message from a user");
+                }
+            }
+        }
+    }
+}
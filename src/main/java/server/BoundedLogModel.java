@@ -0,0 +1,65 @@
+package server;
+
+/**
+ * Keeps the last {@code maxLinesNumber} lines of the server log. Entries are split into lines on append,
+ * so one multi-line entry cannot grow the log past the bound.
+ */
+public class BoundedLogModel {
+    private final String[] lines;
+    private int firstLineIndex = 0;
+    private int linesNumber = 0;
+    private int textLength = 0;
+
+    public BoundedLogModel(int maxLinesNumber) {
+        this.lines = new String[Math.max(1, maxLinesNumber)];
+    }
+
+    /**
+     * @return the number of characters evicted from the beginning of the log
+     */
+    public int append(String entry) {
+        int evictedLength = 0;
+        int lineStartIndex = 0;
+        while (lineStartIndex < entry.length()) {
+            int lineEndIndex = entry.indexOf('\n', lineStartIndex);
+            lineEndIndex = lineEndIndex < 0 ? entry.length() : lineEndIndex + 1;
+            evictedLength += appendLine(entry.substring(lineStartIndex, lineEndIndex));
+            lineStartIndex = lineEndIndex;
+        }
+        return evictedLength;
+    }
+
+    private int appendLine(String line) {
+        int evictedLength = 0;
+        if (linesNumber == lines.length) {
+            evictedLength = lines[firstLineIndex].length();
+            lines[firstLineIndex] = line;
+            firstLineIndex = (firstLineIndex + 1) % lines.length;
+        } else {
+            lines[(firstLineIndex + linesNumber) % lines.length] = line;
+            linesNumber++;
+        }
+        textLength += line.length() - evictedLength;
+        return evictedLength;
+    }
+
+    public int getCapacity() {
+        return lines.length;
+    }
+
+    public int size() {
+        return linesNumber;
+    }
+
+    public int getTextLength() {
+        return textLength;
+    }
+
+    public String buildText() {
+        StringBuilder text = new StringBuilder(textLength);
+        for (int i = 0; i < linesNumber; i++) {
+            text.append(lines[(firstLineIndex + i) % lines.length]);
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,54 @@
+package server;
+
+import connection.ChatUserRecord;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ChatRoom {
+    private final String roomName;
+    private final Set<ChatUserRecord> members = ConcurrentHashMap.newKeySet();
+    private final AtomicLong lastMessageSequenceNumber = new AtomicLong();
+    private final Object messageOrderLock = new Object();
+
+    public ChatRoom(String roomName) {
+        this.roomName = roomName;
+    }
+
+    public String getRoomName() {
+        return roomName;
+    }
+
+    public Set<ChatUserRecord> getMembers() {
+        return members;
+    }
+
+    protected boolean addMember(ChatUserRecord userRecord) {
+        return members.add(userRecord);
+    }
+
+    protected boolean removeMember(ChatUserRecord userRecord) {
+        return members.remove(userRecord);
+    }
+
+    /**
+     * Held while a message is numbered, stored and fanned out, so the history and every member
+     * see the room's messages in sequence number order.
+     */
+    public Object getMessageOrderLock() {
+        return messageOrderLock;
+    }
+
+    public long nextMessageSequenceNumber() {
+        return lastMessageSequenceNumber.incrementAndGet();
+    }
+
+    public void restoreLastMessageSequenceNumber(long sequenceNumber) {
+        lastMessageSequenceNumber.accumulateAndGet(sequenceNumber, Math::max);
+    }
+
+    public boolean isEmpty() {
+        return members.isEmpty();
+    }
+}
@@ -0,0 +1,17 @@
+package server;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("chat.ConnectionAccept")
+@Label("Connection Accept")
+@Category({"Chat", "Server"})
+public class ConnectionAcceptEvent extends Event {
+    @Label("Remote Address")
+    public String remoteAddress;
+
+    @Label("Engine")
+    public String engineType;
+}
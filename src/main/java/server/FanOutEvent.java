@@ -0,0 +1,22 @@
+package server;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+@Name("chat.FanOut")
+@Label("Message Fan-Out")
+@Category({"Chat", "Server"})
+@Threshold("1 ms")
+public class FanOutEvent extends Event {
+    @Label("Room")
+    public String roomName;
+
+    @Label("Message Type")
+    public String messageType;
+
+    @Label("Recipients")
+    public int recipientsNumber;
+}
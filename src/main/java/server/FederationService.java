@@ -0,0 +1,164 @@
+package server;
+
+import connection.ChatUserRecord;
+import connection.Message;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shares one logical chat between server nodes. A node refuses logins with usernames announced by other nodes;
+ * when two nodes accept the same username concurrently, the node with the smaller id keeps the user
+ * and the other one disconnects its local duplicate.
+ */
+public class FederationService implements RelayBusListener, Closeable {
+    private final ServerController serverController;
+    private final ServerModel serverModel;
+    private final RelayBus relayBus;
+    private final String nodeId;
+
+    private final Map<String, String> remoteUserNodeIds = new ConcurrentHashMap<>();
+
+    public FederationService(ServerController serverController, RelayBus relayBus, String nodeId) {
+        this.serverController = serverController;
+        this.serverModel = serverController.getServerModel();
+        this.relayBus = relayBus;
+        this.nodeId = nodeId;
+    }
+
+    public void start() throws IOException {
+        relayBus.start(this);
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public boolean isRemoteUser(String username) {
+        return remoteUserNodeIds.containsKey(username);
+    }
+
+    public synchronized boolean addLocalUserIfUnclaimed(ChatUserRecord userRecord) {
+        if (remoteUserNodeIds.containsKey(userRecord.username()) || !serverModel.addNewOnlineUserIfAbsent(userRecord)) {
+            return false;
+        }
+        publishUserEvent(RelayEventType.USER_JOINED, userRecord.username());
+        return true;
+    }
+
+    public void publishUserLeft(String username) {
+        publishUserEvent(RelayEventType.USER_LEFT, username);
+    }
+
+    public void publishTextMessage(Message textMessage) {
+        relayBus.publish(RelayEvent.builder()
+                .eventType(RelayEventType.TEXT_MESSAGE)
+                .nodeId(nodeId)
+                .message(textMessage)
+                .build());
+    }
+
+    public boolean publishPrivateMessage(Message privateMessage) {
+        if (!isRemoteUser(privateMessage.getRecipientUsername())) {
+            return false;
+        }
+        relayBus.publish(RelayEvent.builder()
+                .eventType(RelayEventType.PRIVATE_MESSAGE)
+                .nodeId(nodeId)
+                .message(privateMessage)
+                .build());
+        return true;
+    }
+
+    private void publishUserEvent(RelayEventType eventType, String username) {
+        relayBus.publish(RelayEvent.builder()
+                .eventType(eventType)
+                .nodeId(nodeId)
+                .username(username)
+                .build());
+    }
+
+    @Override
+    public void onRelayEvent(RelayEvent event) {
+        switch (event.getEventType()) {
+            case USER_JOINED -> handleRemoteUserJoined(event.getUsername(), event.getNodeId());
+            case USER_LEFT -> handleRemoteUserLeft(event.getUsername(), event.getNodeId());
+            case TEXT_MESSAGE -> serverController.sendRemoteTextMessageToRoom(event.getMessage());
+            case PRIVATE_MESSAGE -> deliverRemotePrivateMessage(event.getMessage());
+            default -> {
+            }
+        }
+    }
+
+    private synchronized void handleRemoteUserJoined(String username, String remoteNodeId) {
+        if (username == null || remoteNodeId == null) {
+            return;
+        }
+        ChatUserRecord localUserRecord = serverModel.getOnlineUserByUsername(username);
+        if (localUserRecord != null) {
+            if (nodeId.compareTo(remoteNodeId) < 0) {
+                return;
+            }
+            serverController.disconnectDuplicateUser(localUserRecord, remoteNodeId);
+        }
+        String knownNodeId = remoteUserNodeIds.get(username);
+        if (knownNodeId != null && knownNodeId.compareTo(remoteNodeId) <= 0) {
+            return;
+        }
+        remoteUserNodeIds.put(username, remoteNodeId);
+        serverController.getPresenceService().addRemoteUsername(username);
+    }
+
+    private synchronized void handleRemoteUserLeft(String username, String remoteNodeId) {
+        if (username != null && remoteUserNodeIds.remove(username, remoteNodeId)
+                && serverModel.getOnlineUserByUsername(username) == null) {
+            serverController.getPresenceService().removeRemoteUsername(username);
+        }
+    }
+
+    private void deliverRemotePrivateMessage(Message privateMessage) {
+        ChatUserRecord recipientRecord = serverModel.getOnlineUserByUsername(privateMessage.getRecipientUsername());
+        if (recipientRecord != null) {
+            recipientRecord.userConnection().send(privateMessage);
+        }
+    }
+
+    @Override
+    public void onPeerLinkConnected(SocketAddress peerAddress) {
+        serverController.addServiceMessageToServerLogs("Relay link to " + peerAddress + " is connected");
+        for (ChatUserRecord userRecord : serverModel.getOnlineUsers()) {
+            publishUserEvent(RelayEventType.USER_JOINED, userRecord.username());
+        }
+    }
+
+    @Override
+    public void onRelayEventDropped(SocketAddress peerAddress) {
+        serverController.getServerMetrics().recordDroppedRelayEvent();
+    }
+
+    @Override
+    public synchronized void onNodeDisconnected(String disconnectedNodeId) {
+        List<String> disconnectedUsernames = new ArrayList<>();
+        for (Map.Entry<String, String> remoteUser : remoteUserNodeIds.entrySet()) {
+            if (remoteUser.getValue().equals(disconnectedNodeId)) {
+                disconnectedUsernames.add(remoteUser.getKey());
+            }
+        }
+        for (String username : disconnectedUsernames) {
+            handleRemoteUserLeft(username, disconnectedNodeId);
+        }
+        serverController.addServiceMessageToServerLogs("Node " + disconnectedNodeId + " left the relay bus with "
+                + disconnectedUsernames.size() + " user(s)");
+    }
+
+    @Override
+    public void close() throws IOException {
+        relayBus.close();
+        remoteUserNodeIds.clear();
+    }
+}
@@ -0,0 +1,23 @@
+package server;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("chat.Handshake")
+@Label("Login Handshake")
+@Category({"Chat", "Server"})
+public class HandshakeEvent extends Event {
+    @Label("Remote Address")
+    public String remoteAddress;
+
+    @Label("Username")
+    public String username;
+
+    @Label("Codec")
+    public String codecType;
+
+    @Label("Accepted")
+    public boolean isAccepted;
+}
@@ -0,0 +1,275 @@
+package server;
+
+import connection.Message;
+import connection.MessageCodecType;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * One memory-mapped history file of records {@code [int frame length][long record number][binary codec frame]}.
+ * The length is written last, so a zero length marks the end of the segment after a crash.
+ * <p>
+ * A checkpoint file next to the segment keeps the last sequence number of every room up to a position
+ * of the segment, so recovery only decodes the records written after the last checkpoint.
+ */
+class HistorySegment {
+    static final int RECORD_HEADER_BYTES = Integer.BYTES + Long.BYTES;
+    private static final int INDEX_INTERVAL_BYTES = 4096;
+    private static final String SEGMENT_FILE_SUFFIX = ".segment";
+    private static final String CHECKPOINT_FILE_SUFFIX = ".checkpoint";
+
+    private final Path segmentPath;
+    private final Path checkpointPath;
+    private final long baseRecordNumber;
+    private final MappedByteBuffer mappedBuffer;
+
+    private long[] indexRecordNumbers = new long[16];
+    private int[] indexPositions = new int[16];
+    private int indexEntriesNumber;
+    private int lastIndexedPosition = -INDEX_INTERVAL_BYTES;
+
+    private volatile int committedPosition;
+    private volatile long lastRecordNumber;
+    private int flushedPosition;
+    private int checkpointPosition = -1;
+    private final Object flushLock = new Object();
+    private final Map<String, Long> lastSequenceNumbersByRoom = new ConcurrentHashMap<>();
+
+    private HistorySegment(Path segmentPath, long baseRecordNumber, MappedByteBuffer mappedBuffer) {
+        this.segmentPath = segmentPath;
+        this.checkpointPath = segmentPath.resolveSibling(segmentPath.getFileName().toString()
+                .replace(SEGMENT_FILE_SUFFIX, CHECKPOINT_FILE_SUFFIX));
+        this.baseRecordNumber = baseRecordNumber;
+        this.mappedBuffer = mappedBuffer;
+        this.lastRecordNumber = baseRecordNumber - 1;
+    }
+
+    /**
+     * @param lastSequenceNumbersByRoom the numbers of the earlier segments, carried over so the newest
+     *                                  checkpoint still knows every room after old segments are deleted
+     */
+    static HistorySegment create(Path directory, long baseRecordNumber, int segmentBytes,
+                                 Map<String, Long> lastSequenceNumbersByRoom) throws IOException {
+        Path segmentPath = directory.resolve(String.format("%020d%s", baseRecordNumber, SEGMENT_FILE_SUFFIX));
+        HistorySegment segment = new HistorySegment(segmentPath, baseRecordNumber, map(segmentPath, segmentBytes));
+        segment.lastSequenceNumbersByRoom.putAll(lastSequenceNumbersByRoom);
+        return segment;
+    }
+
+    static HistorySegment recover(Path segmentPath) throws IOException {
+        String fileName = segmentPath.getFileName().toString();
+        long baseRecordNumber = Long.parseLong(fileName.substring(0, fileName.length() - SEGMENT_FILE_SUFFIX.length()));
+        HistorySegment segment = new HistorySegment(segmentPath, baseRecordNumber, map(segmentPath, (int) Files.size(segmentPath)));
+        segment.scanRecords();
+        segment.recoverLastSequenceNumbers();
+        return segment;
+    }
+
+    static boolean isSegmentFile(Path path) {
+        return path.getFileName().toString().endsWith(SEGMENT_FILE_SUFFIX);
+    }
+
+    private static MappedByteBuffer map(Path segmentPath, int segmentBytes) throws IOException {
+        try (FileChannel fileChannel = FileChannel.open(segmentPath,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return fileChannel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        }
+    }
+
+    /**
+     * Scans record headers only, to find the end of the segment and rebuild the position index.
+     */
+    private void scanRecords() {
+        int position = 0;
+        while (position + RECORD_HEADER_BYTES <= mappedBuffer.capacity()) {
+            int frameLength = mappedBuffer.getInt(position);
+            if (frameLength <= 0 || position + RECORD_HEADER_BYTES + frameLength > mappedBuffer.capacity()) {
+                break;
+            }
+            long recordNumber = mappedBuffer.getLong(position + Integer.BYTES);
+            indexRecord(recordNumber, position);
+            lastRecordNumber = recordNumber;
+            position += RECORD_HEADER_BYTES + frameLength;
+        }
+        committedPosition = position;
+        flushedPosition = position;
+    }
+
+    private void recoverLastSequenceNumbers() throws IOException {
+        int decodedPosition = readCheckpoint();
+        if (decodedPosition > committedPosition) {
+            lastSequenceNumbersByRoom.clear();
+            decodedPosition = 0;
+        }
+        ByteBuffer readBuffer = mappedBuffer.duplicate();
+        while (decodedPosition < committedPosition) {
+            int frameLength = readBuffer.getInt(decodedPosition);
+            updateLastSequenceNumber(MessageCodecType.BINARY.getCodec().decode(
+                    readBuffer.slice(decodedPosition + RECORD_HEADER_BYTES, frameLength)));
+            decodedPosition += RECORD_HEADER_BYTES + frameLength;
+        }
+    }
+
+    /**
+     * @return the segment position covered by the checkpoint, 0 when there is no checkpoint
+     */
+    private int readCheckpoint() throws IOException {
+        try (DataInputStream inputStream = new DataInputStream(Files.newInputStream(checkpointPath))) {
+            int position = inputStream.readInt();
+            int roomsNumber = inputStream.readInt();
+            for (int i = 0; i < roomsNumber; i++) {
+                lastSequenceNumbersByRoom.put(inputStream.readUTF(), inputStream.readLong());
+            }
+            checkpointPosition = position;
+            return position;
+        } catch (NoSuchFileException exception) {
+            return 0;
+        }
+    }
+
+    /**
+     * Stores the numbers known up to the flushed position; a message is counted before its record is
+     * committed, so the checkpoint never misses a record it claims to cover.
+     */
+    void writeCheckpoint() throws IOException {
+        synchronized (flushLock) {
+            int position = flushedPosition;
+            if (position == checkpointPosition) {
+                return;
+            }
+            Map<String, Long> lastSequenceNumbers = new HashMap<>(lastSequenceNumbersByRoom);
+            Path temporaryPath = checkpointPath.resolveSibling(checkpointPath.getFileName() + ".tmp");
+            try (DataOutputStream outputStream = new DataOutputStream(Files.newOutputStream(temporaryPath))) {
+                outputStream.writeInt(position);
+                outputStream.writeInt(lastSequenceNumbers.size());
+                for (Map.Entry<String, Long> entry : lastSequenceNumbers.entrySet()) {
+                    outputStream.writeUTF(entry.getKey());
+                    outputStream.writeLong(entry.getValue());
+                }
+            }
+            Files.move(temporaryPath, checkpointPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            checkpointPosition = position;
+        }
+    }
+
+    private void updateLastSequenceNumber(Message message) {
+        if (message.getSequenceNumber() == null) {
+            return;
+        }
+        String roomName = message.getRoomName() == null ? Message.DEFAULT_ROOM_NAME : message.getRoomName();
+        lastSequenceNumbersByRoom.merge(roomName, message.getSequenceNumber(), Math::max);
+    }
+
+    Map<String, Long> getLastSequenceNumbersByRoom() {
+        return lastSequenceNumbersByRoom;
+    }
+
+    boolean hasRoomFor(int frameLength) {
+        return committedPosition + RECORD_HEADER_BYTES + frameLength <= mappedBuffer.capacity();
+    }
+
+    boolean isEmpty() {
+        return committedPosition == 0;
+    }
+
+    void append(long recordNumber, ByteBuffer frame, Message message) {
+        int position = committedPosition;
+        int frameLength = frame.remaining();
+        mappedBuffer.putLong(position + Integer.BYTES, recordNumber);
+        mappedBuffer.put(position + RECORD_HEADER_BYTES, frame, frame.position(), frameLength);
+        mappedBuffer.putInt(position, frameLength);
+        indexRecord(recordNumber, position);
+        updateLastSequenceNumber(message);
+        lastRecordNumber = recordNumber;
+        committedPosition = position + RECORD_HEADER_BYTES + frameLength;
+    }
+
+    private void indexRecord(long recordNumber, int position) {
+        if (position - lastIndexedPosition < INDEX_INTERVAL_BYTES) {
+            return;
+        }
+        synchronized (this) {
+            addIndexEntry(recordNumber, position);
+        }
+        lastIndexedPosition = position;
+    }
+
+    private void addIndexEntry(long recordNumber, int position) {
+        if (indexEntriesNumber == indexPositions.length) {
+            indexRecordNumbers = Arrays.copyOf(indexRecordNumbers, indexEntriesNumber * 2);
+            indexPositions = Arrays.copyOf(indexPositions, indexEntriesNumber * 2);
+        }
+        indexRecordNumbers[indexEntriesNumber] = recordNumber;
+        indexPositions[indexEntriesNumber] = position;
+        indexEntriesNumber++;
+    }
+
+    void flush() {
+        synchronized (flushLock) {
+            int position = committedPosition;
+            if (position > flushedPosition) {
+                mappedBuffer.force(flushedPosition, position - flushedPosition);
+                flushedPosition = position;
+            }
+        }
+    }
+
+    void readFrom(long fromRecordNumber, int maxMessagesNumber, List<Message> messages) throws IOException {
+        int endPosition = committedPosition;
+        int position = findIndexedPositionBefore(fromRecordNumber);
+        ByteBuffer readBuffer = mappedBuffer.duplicate();
+        while (position < endPosition && messages.size() < maxMessagesNumber) {
+            int frameLength = readBuffer.getInt(position);
+            long recordNumber = readBuffer.getLong(position + Integer.BYTES);
+            if (recordNumber >= fromRecordNumber) {
+                messages.add(MessageCodecType.BINARY.getCodec().decode(
+                        readBuffer.slice(position + RECORD_HEADER_BYTES, frameLength)));
+            }
+            position += RECORD_HEADER_BYTES + frameLength;
+        }
+    }
+
+    private synchronized int findIndexedPositionBefore(long recordNumber) {
+        int low = 0;
+        int high = indexEntriesNumber - 1;
+        int position = 0;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (indexRecordNumbers[middle] <= recordNumber) {
+                position = indexPositions[middle];
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return position;
+    }
+
+    long getBaseRecordNumber() {
+        return baseRecordNumber;
+    }
+
+    long getLastRecordNumber() {
+        return lastRecordNumber;
+    }
+
+    void delete() throws IOException {
+        Files.deleteIfExists(checkpointPath);
+        Files.deleteIfExists(segmentPath);
+    }
+}
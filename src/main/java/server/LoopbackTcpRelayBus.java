@@ -0,0 +1,218 @@
+package server;
+
+import com.google.gson.Gson;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full-mesh relay bus over loopback TCP. Every node listens on its relay port for events of the other nodes
+ * and keeps one outgoing link per peer, so events travel as JSON lines from the publisher to each peer directly.
+ * Events published while a link is down wait in a bounded backlog and are replayed when the link reconnects;
+ * when the backlog is full the oldest event is dropped and reported to the listener.
+ */
+public class LoopbackTcpRelayBus implements RelayBus {
+    private static final int CONNECT_TIMEOUT_MILLIS = 1000;
+    private static final long RECONNECT_DELAY_MILLIS = 1000;
+    private static final int MAX_PENDING_EVENTS_NUMBER = 65536;
+
+    private final String nodeId;
+    private final int relayPort;
+    private final List<InetSocketAddress> peerAddresses;
+    private final ThreadFactory threadFactory;
+
+    private final Gson gson = new Gson();
+    private final List<PeerLink> peerLinks = new ArrayList<>();
+    private final List<Thread> linkThreads = new ArrayList<>();
+    private final Set<Socket> inboundSockets = ConcurrentHashMap.newKeySet();
+    private ServerSocket serverSocket;
+    private RelayBusListener listener;
+    private volatile boolean isClosed;
+
+    public LoopbackTcpRelayBus(String nodeId, int relayPort, List<InetSocketAddress> peerAddresses, ThreadFactory threadFactory) {
+        this.nodeId = nodeId;
+        this.relayPort = relayPort;
+        this.peerAddresses = peerAddresses;
+        this.threadFactory = threadFactory;
+    }
+
+    public static List<InetSocketAddress> parsePeerAddresses(String peerAddresses) {
+        List<InetSocketAddress> parsedPeerAddresses = new ArrayList<>();
+        if (peerAddresses == null || peerAddresses.isBlank()) {
+            return parsedPeerAddresses;
+        }
+        for (String peerAddress : peerAddresses.split(",")) {
+            String trimmedPeerAddress = peerAddress.trim();
+            int portSeparatorIndex = trimmedPeerAddress.lastIndexOf(':');
+            if (portSeparatorIndex < 0) {
+                parsedPeerAddresses.add(new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(trimmedPeerAddress)));
+            } else {
+                parsedPeerAddresses.add(new InetSocketAddress(trimmedPeerAddress.substring(0, portSeparatorIndex),
+                        Integer.parseInt(trimmedPeerAddress.substring(portSeparatorIndex + 1))));
+            }
+        }
+        return parsedPeerAddresses;
+    }
+
+    @Override
+    public void start(RelayBusListener listener) throws IOException {
+        this.listener = listener;
+        serverSocket = new ServerSocket(relayPort, 50, InetAddress.getLoopbackAddress());
+        startLinkThread(this::acceptPeerConnections);
+        for (InetSocketAddress peerAddress : peerAddresses) {
+            PeerLink peerLink = new PeerLink(peerAddress);
+            peerLinks.add(peerLink);
+            startLinkThread(peerLink::run);
+        }
+    }
+
+    private void startLinkThread(Runnable linkTask) {
+        Thread linkThread = threadFactory.newThread(linkTask);
+        linkThreads.add(linkThread);
+        linkThread.start();
+    }
+
+    @Override
+    public void publish(RelayEvent event) {
+        if (isClosed || peerLinks.isEmpty()) {
+            return;
+        }
+        String eventLine = gson.toJson(event);
+        for (PeerLink peerLink : peerLinks) {
+            peerLink.enqueueEventLine(eventLine);
+        }
+    }
+
+    private void acceptPeerConnections() {
+        while (!isClosed) {
+            try {
+                Socket peerSocket = serverSocket.accept();
+                inboundSockets.add(peerSocket);
+                startLinkThread(() -> readPeerEvents(peerSocket));
+            } catch (IOException exception) {
+                if (!isClosed) {
+                    sleepBeforeRetry();
+                }
+            }
+        }
+    }
+
+    private void readPeerEvents(Socket peerSocket) {
+        String peerNodeId = null;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(peerSocket.getInputStream(), StandardCharsets.UTF_8))) {
+            String eventLine;
+            while ((eventLine = reader.readLine()) != null) {
+                RelayEvent event = gson.fromJson(eventLine, RelayEvent.class);
+                if (event == null || event.getEventType() == null) {
+                    continue;
+                }
+                if (event.getEventType() == RelayEventType.NODE_HELLO) {
+                    peerNodeId = event.getNodeId();
+                    continue;
+                }
+                listener.onRelayEvent(event);
+            }
+        } catch (Exception ignored) {
+        } finally {
+            inboundSockets.remove(peerSocket);
+            if (peerNodeId != null && !isClosed) {
+                listener.onNodeDisconnected(peerNodeId);
+            }
+        }
+    }
+
+    private void sleepBeforeRetry() {
+        try {
+            Thread.sleep(RECONNECT_DELAY_MILLIS);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        isClosed = true;
+        for (Thread linkThread : linkThreads) {
+            linkThread.interrupt();
+        }
+        for (Socket inboundSocket : inboundSockets) {
+            inboundSocket.close();
+        }
+        if (serverSocket != null) {
+            serverSocket.close();
+        }
+    }
+
+    private class PeerLink {
+        private final InetSocketAddress peerAddress;
+        private final BlockingQueue<String> pendingEventLines = new LinkedBlockingQueue<>(MAX_PENDING_EVENTS_NUMBER);
+
+        private PeerLink(InetSocketAddress peerAddress) {
+            this.peerAddress = peerAddress;
+        }
+
+        private void run() {
+            while (!isClosed && !Thread.currentThread().isInterrupted()) {
+                try (Socket peerSocket = new Socket()) {
+                    peerSocket.connect(peerAddress, CONNECT_TIMEOUT_MILLIS);
+                    peerSocket.setTcpNoDelay(true);
+                    Writer writer = new BufferedWriter(new OutputStreamWriter(peerSocket.getOutputStream(), StandardCharsets.UTF_8));
+                    writeEventLine(writer, gson.toJson(RelayEvent.builder()
+                            .eventType(RelayEventType.NODE_HELLO)
+                            .nodeId(nodeId)
+                            .build()));
+                    writer.flush();
+                    listener.onPeerLinkConnected(peerAddress);
+                    writePendingEvents(writer);
+                } catch (IOException exception) {
+                    sleepBeforeRetry();
+                } catch (InterruptedException exception) {
+                    return;
+                }
+            }
+        }
+
+        private void enqueueEventLine(String eventLine) {
+            while (!pendingEventLines.offer(eventLine)) {
+                if (pendingEventLines.poll() != null) {
+                    listener.onRelayEventDropped(peerAddress);
+                }
+            }
+        }
+
+        private void writePendingEvents(Writer writer) throws IOException, InterruptedException {
+            while (!isClosed) {
+                String eventLine = pendingEventLines.poll(RECONNECT_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+                if (eventLine == null) {
+                    continue;
+                }
+                do {
+                    writeEventLine(writer, eventLine);
+                } while ((eventLine = pendingEventLines.poll()) != null);
+                writer.flush();
+            }
+        }
+
+        private void writeEventLine(Writer writer, String eventLine) throws IOException {
+            writer.write(eventLine);
+            writer.write('\n');
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package server;
+
+import connection.EncodedFrame;
+import connection.Message;
+import connection.MessageCodecType;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+public class MessageHistory implements Closeable {
+    private static final int MAX_SCANNED_RECORDS_PER_REPLAYED_MESSAGE = 64;
+
+    private final Path historyDirectory;
+    private final int segmentBytes;
+    private final int maxSegmentsNumber;
+
+    private final NavigableMap<Long, HistorySegment> segments = new ConcurrentSkipListMap<>();
+    private final Map<String, Long> lastSequenceNumbersByRoom = new ConcurrentHashMap<>();
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final ScheduledExecutorService flushExecutor;
+    private volatile HistorySegment activeSegment;
+    private boolean isClosed = false;
+
+    private MessageHistory(ServerSettings serverSettings) {
+        this.historyDirectory = Path.of(serverSettings.getHistoryDirectory());
+        this.segmentBytes = serverSettings.getHistorySegmentBytes();
+        this.maxSegmentsNumber = serverSettings.getHistoryMaxSegmentsNumber();
+        this.flushExecutor = Executors.newSingleThreadScheduledExecutor(
+                serverSettings.getEngineType().createThreadFactory("MessageHistoryFlusher-"));
+    }
+
+    public static MessageHistory open(ServerSettings serverSettings) throws IOException {
+        MessageHistory messageHistory = new MessageHistory(serverSettings);
+        messageHistory.recoverSegments();
+        messageHistory.flushExecutor.scheduleWithFixedDelay(messageHistory::flush,
+                serverSettings.getHistoryFsyncIntervalMillis(), serverSettings.getHistoryFsyncIntervalMillis(), TimeUnit.MILLISECONDS);
+        return messageHistory;
+    }
+
+    private void recoverSegments() throws IOException {
+        Files.createDirectories(historyDirectory);
+        try (Stream<Path> segmentPaths = Files.list(historyDirectory)) {
+            for (Path segmentPath : segmentPaths.filter(HistorySegment::isSegmentFile).toList()) {
+                HistorySegment segment = HistorySegment.recover(segmentPath);
+                segments.put(segment.getBaseRecordNumber(), segment);
+            }
+        }
+        if (!segments.isEmpty()) {
+            activeSegment = segments.lastEntry().getValue();
+        }
+        for (HistorySegment segment : segments.values()) {
+            segment.getLastSequenceNumbersByRoom().forEach(
+                    (roomName, sequenceNumber) -> lastSequenceNumbersByRoom.merge(roomName, sequenceNumber, Math::max));
+        }
+    }
+
+    public long getLastSequenceNumber(String roomName) {
+        return lastSequenceNumbersByRoom.getOrDefault(roomName, 0L);
+    }
+
+    public long getLastRecordNumber() {
+        return activeSegment == null ? 0 : activeSegment.getLastRecordNumber();
+    }
+
+    public EncodedFrame append(Message message) throws IOException {
+        EncodedFrame frame = EncodedFrame.encode(message);
+        ByteBuffer binaryFrame = frame.asByteBuffer(MessageCodecType.BINARY);
+        appendLock.lock();
+        try {
+            if (isClosed) {
+                throw new IOException("The chat history is closed");
+            }
+            long recordNumber = getLastRecordNumber() + 1;
+            if (activeSegment == null || !activeSegment.hasRoomFor(binaryFrame.remaining())) {
+                rollSegment(recordNumber, binaryFrame.remaining());
+            }
+            activeSegment.append(recordNumber, binaryFrame, message);
+            if (message.getSequenceNumber() != null) {
+                lastSequenceNumbersByRoom.merge(message.getRoomName() == null ? Message.DEFAULT_ROOM_NAME : message.getRoomName(),
+                        message.getSequenceNumber(), Math::max);
+            }
+            return frame;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private void rollSegment(long baseRecordNumber, int frameLength) throws IOException {
+        if (HistorySegment.RECORD_HEADER_BYTES + frameLength > segmentBytes) {
+            throw new IOException("The message does not fit into a history segment");
+        }
+        if (activeSegment != null && activeSegment.isEmpty()) {
+            segments.remove(activeSegment.getBaseRecordNumber());
+            activeSegment.delete();
+        } else if (activeSegment != null) {
+            activeSegment.flush();
+            activeSegment.writeCheckpoint();
+        }
+        activeSegment = HistorySegment.create(historyDirectory, baseRecordNumber, segmentBytes, lastSequenceNumbersByRoom);
+        segments.put(baseRecordNumber, activeSegment);
+        while (segments.size() > maxSegmentsNumber) {
+            segments.pollFirstEntry().getValue().delete();
+        }
+    }
+
+    public List<Message> readFrom(long fromRecordNumber, int maxMessagesNumber) throws IOException {
+        List<Message> messages = new ArrayList<>();
+        if (segments.isEmpty()) {
+            return messages;
+        }
+        Map.Entry<Long, HistorySegment> firstSegment = segments.floorEntry(fromRecordNumber);
+        Long firstSegmentKey = firstSegment == null ? segments.firstKey() : firstSegment.getKey();
+        for (HistorySegment segment : segments.tailMap(firstSegmentKey, true).values()) {
+            if (messages.size() >= maxMessagesNumber) {
+                break;
+            }
+            segment.readFrom(fromRecordNumber, maxMessagesNumber, messages);
+        }
+        return messages;
+    }
+
+    public List<Message> readLast(int messagesNumber) throws IOException {
+        if (messagesNumber <= 0) {
+            return List.of();
+        }
+        return readFrom(getLastRecordNumber() - messagesNumber + 1, messagesNumber);
+    }
+
+    /**
+     * Reads the last {@code messagesNumber} messages that match the filter, scanning back through the history.
+     * At most {@value #MAX_SCANNED_RECORDS_PER_REPLAYED_MESSAGE} records are scanned per requested message,
+     * so fewer messages are returned when matching ones are rare.
+     */
+    public List<Message> readLast(int messagesNumber, Predicate<Message> filter) throws IOException {
+        List<Message> matchedMessages = new ArrayList<>();
+        if (messagesNumber <= 0 || segments.isEmpty()) {
+            return matchedMessages;
+        }
+        long firstRecordNumber = Math.max(segments.firstKey(),
+                getLastRecordNumber() - (long) messagesNumber * MAX_SCANNED_RECORDS_PER_REPLAYED_MESSAGE + 1);
+        long endRecordNumber = getLastRecordNumber();
+        long windowSize = messagesNumber;
+        while (matchedMessages.size() < messagesNumber && endRecordNumber >= firstRecordNumber) {
+            long fromRecordNumber = Math.max(firstRecordNumber, endRecordNumber - windowSize + 1);
+            List<Message> windowMessages = readFrom(fromRecordNumber, (int) (endRecordNumber - fromRecordNumber + 1));
+            matchedMessages.addAll(0, windowMessages.stream().filter(filter).toList());
+            endRecordNumber = fromRecordNumber - 1;
+            windowSize *= 2;
+        }
+        int extraMessagesNumber = matchedMessages.size() - messagesNumber;
+        return extraMessagesNumber > 0 ? matchedMessages.subList(extraMessagesNumber, matchedMessages.size()) : matchedMessages;
+    }
+
+    private void flush() {
+        for (HistorySegment segment : segments.values()) {
+            segment.flush();
+        }
+        HistorySegment currentActiveSegment = activeSegment;
+        if (currentActiveSegment != null) {
+            try {
+                currentActiveSegment.writeCheckpoint();
+            } catch (IOException ignored) {
+                // the next flush retries, and recovery decodes whatever the last checkpoint does not cover
+            }
+        }
+    }
+
+    /**
+     * Flushes and checkpoints the segments, then drops every reference to them. The JDK has no public way
+     * to unmap a file, so the mappings are released when the garbage collector reclaims the buffers.
+     */
+    @Override
+    public void close() {
+        flushExecutor.shutdown();
+        try {
+            flushExecutor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+        appendLock.lock();
+        try {
+            isClosed = true;
+            flush();
+            segments.clear();
+            activeSegment = null;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package server;
+
+import java.io.IOException;
+import java.nio.channels.Channel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+public class NioEventLoop extends Thread {
+    private final ServerController serverController;
+    private final ServerSettings serverSettings;
+    private final Selector selector;
+    private final Queue<Runnable> pendingTasks = new ConcurrentLinkedQueue<>();
+    private final Queue<ScheduledTask> scheduledTasks = new PriorityQueue<>(Comparator.comparingLong(ScheduledTask::deadlineNanos));
+    private volatile boolean isRunning = true;
+
+    public NioEventLoop(ServerController serverController, ServerSettings serverSettings, String name) throws IOException {
+        super(name);
+        this.serverController = serverController;
+        this.serverSettings = serverSettings;
+        this.selector = Selector.open();
+        setDaemon(true);
+    }
+
+    public void registerUserChannel(SocketChannel socketChannel) throws IOException {
+        socketChannel.configureBlocking(false);
+        execute(() -> {
+            try {
+                NioUserConnection userConnection = new NioUserConnection(serverController, serverSettings, this, socketChannel);
+                SelectionKey selectionKey = socketChannel.register(selector, SelectionKey.OP_READ, userConnection);
+                userConnection.start(selectionKey, serverController.createUserSession(userConnection));
+            } catch (IOException exception) {
+                serverController.addServiceMessageToServerLogs("An error occurred when connecting a new user");
+                closeChannelQuietly(socketChannel);
+            }
+        });
+    }
+
+    public void execute(Runnable task) {
+        pendingTasks.add(task);
+        if (!isInEventLoop()) {
+            selector.wakeup();
+        }
+    }
+
+    public void schedule(Runnable task, long delayNanos) {
+        ScheduledTask scheduledTask = new ScheduledTask(System.nanoTime() + delayNanos, task);
+        if (isInEventLoop()) {
+            scheduledTasks.add(scheduledTask);
+        } else {
+            execute(() -> scheduledTasks.add(scheduledTask));
+        }
+    }
+
+    public boolean isInEventLoop() {
+        return Thread.currentThread() == this;
+    }
+
+    public void shutdown() {
+        isRunning = false;
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        while (isRunning) {
+            try {
+                selectUntilNextScheduledTask();
+                runPendingTasks();
+                runScheduledTasks();
+                processSelectedKeys();
+            } catch (Exception exception) {
+                serverController.addServiceMessageToServerLogs("An error occurred in the event loop " + getName());
+            }
+        }
+        closeAllChannels();
+    }
+
+    private void selectUntilNextScheduledTask() throws IOException {
+        ScheduledTask nextScheduledTask = scheduledTasks.peek();
+        if (nextScheduledTask == null) {
+            selector.select();
+            return;
+        }
+        long remainingNanos = nextScheduledTask.deadlineNanos() - System.nanoTime();
+        if (remainingNanos > 0) {
+            selector.select(TimeUnit.NANOSECONDS.toMillis(remainingNanos + TimeUnit.MILLISECONDS.toNanos(1) - 1));
+        } else {
+            selector.selectNow();
+        }
+    }
+
+    private void runScheduledTasks() {
+        long nowNanos = System.nanoTime();
+        ScheduledTask scheduledTask;
+        while ((scheduledTask = scheduledTasks.peek()) != null && scheduledTask.deadlineNanos() <= nowNanos) {
+            scheduledTasks.poll().task().run();
+        }
+    }
+
+    private void runPendingTasks() {
+        Runnable task;
+        while ((task = pendingTasks.poll()) != null) {
+            task.run();
+        }
+    }
+
+    private void processSelectedKeys() {
+        Iterator<SelectionKey> selectedKeys = selector.selectedKeys().iterator();
+        while (selectedKeys.hasNext()) {
+            SelectionKey selectionKey = selectedKeys.next();
+            selectedKeys.remove();
+            NioUserConnection userConnection = (NioUserConnection) selectionKey.attachment();
+            if (selectionKey.isValid() && selectionKey.isWritable()) {
+                userConnection.handleWritable();
+            }
+            if (selectionKey.isValid() && selectionKey.isReadable()) {
+                userConnection.handleReadable();
+            }
+        }
+    }
+
+    private void closeAllChannels() {
+        for (SelectionKey selectionKey : selector.keys()) {
+            closeChannelQuietly(selectionKey.channel());
+        }
+        try {
+            selector.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static void closeChannelQuietly(Channel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private record ScheduledTask(long deadlineNanos, Runnable task) {
+    }
+}
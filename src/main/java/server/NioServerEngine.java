@@ -0,0 +1,76 @@
+package server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+public class NioServerEngine implements ServerEngine {
+    private final ServerController serverController;
+    private final ServerSettings serverSettings;
+    private final NioEventLoop[] eventLoops;
+    private ServerSocketChannel serverSocketChannel;
+    private int nextEventLoopIndex = 0;
+
+    public NioServerEngine(ServerController serverController, ServerSettings serverSettings) {
+        this.serverController = serverController;
+        this.serverSettings = serverSettings;
+        this.eventLoops = new NioEventLoop[Math.max(1, serverSettings.getEventLoopsNumber())];
+    }
+
+    @Override
+    public void bind(int port) throws IOException {
+        serverSocketChannel = ServerSocketChannel.open();
+        serverSocketChannel.bind(new InetSocketAddress(port));
+        for (int i = 0; i < eventLoops.length; i++) {
+            eventLoops[i] = new NioEventLoop(serverController, serverSettings, "NioEventLoop-" + i);
+            eventLoops[i].start();
+        }
+    }
+
+    @Override
+    public void acceptConnections() throws IOException {
+        while (true) {
+            SocketChannel socketChannel = serverSocketChannel.accept();
+            ConnectionAcceptEvent acceptEvent = new ConnectionAcceptEvent();
+            acceptEvent.begin();
+            serverController.addServiceMessageToServerLogs(
+                    "A new user connected with a remote socket " + socketChannel.getRemoteAddress().toString());
+            getNextEventLoop().registerUserChannel(socketChannel);
+            acceptEvent.end();
+            if (acceptEvent.shouldCommit()) {
+                acceptEvent.remoteAddress = String.valueOf(socketChannel.getRemoteAddress());
+                acceptEvent.engineType = serverSettings.getEngineType().name();
+                acceptEvent.commit();
+            }
+        }
+    }
+
+    private NioEventLoop getNextEventLoop() {
+        NioEventLoop eventLoop = eventLoops[nextEventLoopIndex];
+        nextEventLoopIndex = (nextEventLoopIndex + 1) % eventLoops.length;
+        return eventLoop;
+    }
+
+    @Override
+    public boolean isClosed() {
+        return serverSocketChannel == null || !serverSocketChannel.isOpen();
+    }
+
+    @Override
+    public void stopAccepting() throws IOException {
+        if (serverSocketChannel != null) {
+            serverSocketChannel.close();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        stopAccepting();
+        for (NioEventLoop eventLoop : eventLoops) {
+            if (eventLoop != null) {
+                eventLoop.shutdown();
+            }
+        }
+    }
+}
@@ -0,0 +1,343 @@
+package server;
+
+import connection.EncodedFrame;
+import connection.FrameCompression;
+import connection.Message;
+import connection.MessageCodec;
+import connection.MessageCodecType;
+import connection.MessageConnection;
+import connection.MessageReceiveEvent;
+import connection.MessageSendEvent;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class NioUserConnection implements MessageConnection {
+    private static final int READ_BUFFER_SIZE = 8192;
+    private static final int MAX_GATHERED_FRAMES = 64;
+
+    private final ServerController serverController;
+    private final NioEventLoop eventLoop;
+    private final SocketChannel socketChannel;
+    private final SocketAddress remoteSocketAddress;
+
+    private ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+    private int scannedFrameBytesNumber;
+
+    private final OutboundQueue<QueuedFrame> outboundFrames;
+    private final AtomicBoolean isWriteScheduled = new AtomicBoolean(false);
+    private final ByteBuffer[] gatheredFrames;
+    private int gatheredFramesNumber;
+    private long gatheredBytesNumber;
+    private final int writeBatchMaxBytes;
+    private final ServerMetrics serverMetrics;
+
+    private volatile MessageCodecType codecType = MessageCodecType.JSON;
+    private volatile FrameCompression frameCompression;
+
+    private SelectionKey selectionKey;
+    private UserSession userSession;
+    private Message throttledMessage;
+    private boolean isDraining;
+    private final CompletableFuture<Void> closeFuture = new CompletableFuture<>();
+
+    public NioUserConnection(ServerController serverController,
+                             ServerSettings serverSettings,
+                             NioEventLoop eventLoop,
+                             SocketChannel socketChannel) throws IOException {
+        this.serverController = serverController;
+        this.outboundFrames = new OutboundQueue<>(serverSettings.getOutboundQueueHighWaterMark(), serverSettings.getOverflowPolicy());
+        this.gatheredFrames = new ByteBuffer[serverSettings.isWriteCoalescingEnabled() ? MAX_GATHERED_FRAMES : 1];
+        this.writeBatchMaxBytes = serverSettings.getWriteBatchMaxBytes();
+        this.serverMetrics = serverController.getServerMetrics();
+        this.eventLoop = eventLoop;
+        this.socketChannel = socketChannel;
+        this.remoteSocketAddress = socketChannel.getRemoteAddress();
+    }
+
+    protected void start(SelectionKey selectionKey, UserSession userSession) {
+        this.selectionKey = selectionKey;
+        this.userSession = userSession;
+        userSession.start();
+    }
+
+    @Override
+    public void send(EncodedFrame frame) {
+        if (!socketChannel.isOpen()) {
+            return;
+        }
+        MessageCodecType currentCodecType = codecType;
+        FrameCompression currentFrameCompression = frameCompression;
+        ByteBuffer frameBuffer = frame.asByteBuffer(currentCodecType);
+        if (currentFrameCompression == null || !currentFrameCompression.shouldCompress(currentCodecType, frameBuffer.remaining())) {
+            currentFrameCompression = null;
+        }
+        if (outboundFrames.offer(new QueuedFrame(frameBuffer, currentFrameCompression))) {
+            scheduleWrite();
+        } else {
+            disconnectSlowConsumer();
+        }
+    }
+
+    private void disconnectSlowConsumer() {
+        serverController.addServiceMessageToServerLogs(
+                "The user with remote address " + remoteSocketAddress + " was disconnected as a slow consumer");
+        closeQuietly();
+        eventLoop.execute(userSession::handleConnectionLost);
+    }
+
+    private void scheduleWrite() {
+        if (isWriteScheduled.compareAndSet(false, true)) {
+            if (eventLoop.isInEventLoop()) {
+                enableWriteInterest();
+            } else {
+                eventLoop.execute(this::enableWriteInterest);
+            }
+        }
+    }
+
+    private void enableWriteInterest() {
+        if (selectionKey.isValid()) {
+            selectionKey.interestOpsOr(SelectionKey.OP_WRITE);
+        }
+    }
+
+    protected void handleWritable() {
+        try {
+            while (gatherOutboundFrames() > 0) {
+                MessageSendEvent sendEvent = new MessageSendEvent();
+                sendEvent.begin();
+                long writtenBytesNumber = socketChannel.write(gatheredFrames, 0, gatheredFramesNumber);
+                int writtenFramesNumber = releaseWrittenFrames(writtenBytesNumber);
+                sendEvent.end();
+                if (sendEvent.shouldCommit()) {
+                    sendEvent.remoteAddress = String.valueOf(remoteSocketAddress);
+                    sendEvent.codecType = codecType.name();
+                    sendEvent.framesNumber = writtenFramesNumber;
+                    sendEvent.bytesNumber = writtenBytesNumber;
+                    sendEvent.commit();
+                }
+                serverMetrics.recordSentMessages(writtenFramesNumber, writtenBytesNumber);
+                if (gatheredFrames.length > 1) {
+                    serverMetrics.recordWriteBatch(writtenFramesNumber, writtenBytesNumber);
+                }
+                if (gatheredFramesNumber > 0) {
+                    return;
+                }
+            }
+            selectionKey.interestOpsAnd(~SelectionKey.OP_WRITE);
+            isWriteScheduled.set(false);
+            if (!outboundFrames.isEmpty()) {
+                scheduleWrite();
+            } else {
+                closeIfDrained();
+            }
+        } catch (IOException exception) {
+            handleConnectionLost();
+        }
+    }
+
+    private int gatherOutboundFrames() throws IOException {
+        QueuedFrame queuedFrame;
+        while (gatheredFramesNumber < gatheredFrames.length
+                && (gatheredFramesNumber == 0 || gatheredBytesNumber < writeBatchMaxBytes)
+                && (queuedFrame = outboundFrames.poll()) != null) {
+            ByteBuffer frame = queuedFrame.frame();
+            if (queuedFrame.frameCompression() != null) {
+                frame = queuedFrame.frameCompression().compressFrame(frame);
+            }
+            gatheredFrames[gatheredFramesNumber++] = frame;
+            gatheredBytesNumber += frame.remaining();
+        }
+        return gatheredFramesNumber;
+    }
+
+    private int releaseWrittenFrames(long writtenBytesNumber) {
+        gatheredBytesNumber -= writtenBytesNumber;
+        int writtenFramesNumber = 0;
+        while (writtenFramesNumber < gatheredFramesNumber && !gatheredFrames[writtenFramesNumber].hasRemaining()) {
+            writtenFramesNumber++;
+        }
+        System.arraycopy(gatheredFrames, writtenFramesNumber, gatheredFrames, 0, gatheredFramesNumber - writtenFramesNumber);
+        for (int i = gatheredFramesNumber - writtenFramesNumber; i < gatheredFramesNumber; i++) {
+            gatheredFrames[i] = null;
+        }
+        gatheredFramesNumber -= writtenFramesNumber;
+        return writtenFramesNumber;
+    }
+
+    protected void handleReadable() {
+        try {
+            ensureReadBufferHasSpace();
+            int readBytesNumber = socketChannel.read(readBuffer);
+            if (readBytesNumber < 0) {
+                throw new EOFException("Connection was closed by the remote side");
+            }
+            serverMetrics.recordReceivedBytes(readBytesNumber);
+            handleBufferedMessages();
+        } catch (Exception exception) {
+            handleConnectionLost();
+        }
+    }
+
+    private void handleBufferedMessages() throws IOException {
+        readBuffer.flip();
+        try {
+            Message messageFromUser;
+            while (!userSession.isFinished() && (messageFromUser = decodeNextMessage()) != null) {
+                serverMetrics.recordReceivedMessage();
+                long throttleNanos = userSession.acquireMessagePermit(messageFromUser);
+                if (throttleNanos > 0) {
+                    pauseReading(messageFromUser, throttleNanos);
+                    return;
+                }
+                userSession.handleMessage(messageFromUser);
+            }
+        } finally {
+            readBuffer.compact();
+        }
+    }
+
+    private void pauseReading(Message messageFromUser, long throttleNanos) {
+        throttledMessage = messageFromUser;
+        selectionKey.interestOpsAnd(~SelectionKey.OP_READ);
+        eventLoop.schedule(this::resumeReading, throttleNanos);
+    }
+
+    private void resumeReading() {
+        if (!selectionKey.isValid() || userSession.isFinished() || isDraining) {
+            return;
+        }
+        try {
+            long throttleNanos = userSession.acquireMessagePermit(throttledMessage);
+            if (throttleNanos > 0) {
+                eventLoop.schedule(this::resumeReading, throttleNanos);
+                return;
+            }
+            Message messageFromUser = throttledMessage;
+            throttledMessage = null;
+            userSession.handleMessage(messageFromUser);
+            handleBufferedMessages();
+            if (throttledMessage == null && selectionKey.isValid()) {
+                selectionKey.interestOpsOr(SelectionKey.OP_READ);
+            }
+        } catch (Exception exception) {
+            handleConnectionLost();
+        }
+    }
+
+    private Message decodeNextMessage() throws IOException {
+        MessageReceiveEvent receiveEvent = new MessageReceiveEvent();
+        receiveEvent.begin();
+        int framePosition = readBuffer.position();
+        Message messageFromUser = codecType.getCodec().decode(readBuffer, frameCompression, scannedFrameBytesNumber);
+        scannedFrameBytesNumber = messageFromUser == null ? readBuffer.remaining() : 0;
+        receiveEvent.end();
+        if (messageFromUser != null && receiveEvent.shouldCommit()) {
+            receiveEvent.remoteAddress = String.valueOf(remoteSocketAddress);
+            receiveEvent.messageType = String.valueOf(messageFromUser.getMessageType());
+            receiveEvent.codecType = codecType.name();
+            receiveEvent.bytesNumber = readBuffer.position() - framePosition;
+            receiveEvent.commit();
+        }
+        return messageFromUser;
+    }
+
+    private void ensureReadBufferHasSpace() throws IOException {
+        if (readBuffer.hasRemaining()) {
+            return;
+        }
+        if (readBuffer.capacity() >= MessageCodec.MAX_FRAME_LENGTH + READ_BUFFER_SIZE) {
+            throw new IOException("Message frame is too long");
+        }
+        ByteBuffer extendedReadBuffer = ByteBuffer.allocate(readBuffer.capacity() * 2);
+        readBuffer.flip();
+        extendedReadBuffer.put(readBuffer);
+        readBuffer = extendedReadBuffer;
+    }
+
+    /**
+     * Stops reading on the event loop and closes the channel once every queued frame is written.
+     */
+    @Override
+    public CompletableFuture<Void> closeGracefully() {
+        eventLoop.execute(() -> {
+            isDraining = true;
+            if (selectionKey.isValid()) {
+                selectionKey.interestOpsAnd(~SelectionKey.OP_READ);
+            }
+            closeIfDrained();
+        });
+        return closeFuture;
+    }
+
+    private void closeIfDrained() {
+        if (isDraining && gatheredFramesNumber == 0 && outboundFrames.isEmpty()) {
+            closeQuietly();
+        }
+    }
+
+    private void handleConnectionLost() {
+        userSession.handleConnectionLost();
+        closeQuietly();
+    }
+
+    private void closeQuietly() {
+        try {
+            close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    @Override
+    public int getQueuedFramesNumber() {
+        return outboundFrames.size();
+    }
+
+    @Override
+    public MessageCodecType getMessageCodecType() {
+        return codecType;
+    }
+
+    @Override
+    public void setMessageCodecType(MessageCodecType codecType) {
+        this.codecType = codecType;
+    }
+
+    @Override
+    public void setFrameCompression(FrameCompression frameCompression) {
+        this.frameCompression = frameCompression;
+    }
+
+    @Override
+    public SocketAddress getRemoteSocketAddress() {
+        return remoteSocketAddress;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            outboundFrames.clear();
+            socketChannel.close();
+            FrameCompression currentFrameCompression = frameCompression;
+            if (currentFrameCompression != null) {
+                currentFrameCompression.close();
+            }
+        } finally {
+            closeFuture.complete(null);
+        }
+    }
+
+    /**
+     * A frame encoded with the codec selected when it was queued. The compression is decided at the same moment
+     * and applied on the event loop, which keeps the deflate stream in write order.
+     */
+    private record QueuedFrame(ByteBuffer frame, FrameCompression frameCompression) {
+    }
+}
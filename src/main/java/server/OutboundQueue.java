@@ -0,0 +1,53 @@
+package server;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class OutboundQueue<T> {
+    private final BlockingQueue<T> queue;
+    private final OverflowPolicy overflowPolicy;
+
+    public OutboundQueue(int highWaterMark, OverflowPolicy overflowPolicy) {
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, highWaterMark));
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    public boolean offer(T element) {
+        while (!queue.offer(element)) {
+            if (overflowPolicy == OverflowPolicy.DISCONNECT) {
+                return false;
+            }
+            queue.poll();
+        }
+        return true;
+    }
+
+    public T take() throws InterruptedException {
+        return queue.take();
+    }
+
+    public T poll() {
+        return queue.poll();
+    }
+
+    public T poll(long timeout, TimeUnit timeUnit) throws InterruptedException {
+        return queue.poll(timeout, timeUnit);
+    }
+
+    public T peek() {
+        return queue.peek();
+    }
+
+    public boolean isEmpty() {
+        return queue.isEmpty();
+    }
+
+    public int size() {
+        return queue.size();
+    }
+
+    public void clear() {
+        queue.clear();
+    }
+}
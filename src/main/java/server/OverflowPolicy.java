@@ -0,0 +1,10 @@
+package server;
+
+public enum OverflowPolicy {
+    DROP_OLDEST,
+    DISCONNECT;
+
+    public static OverflowPolicy fromName(String name) {
+        return valueOf(name.trim().toUpperCase().replace('-', '_'));
+    }
+}
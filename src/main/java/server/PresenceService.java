@@ -0,0 +1,155 @@
+package server;
+
+import connection.ChatUserRecord;
+import connection.EncodedFrame;
+import connection.Message;
+import connection.MessageType;
+
+import java.io.Closeable;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+public class PresenceService implements Closeable {
+    private final ServerController serverController;
+
+    private final Set<ChatUserRecord> legacySubscribers = ConcurrentHashMap.newKeySet();
+    private final Set<ChatUserRecord> deltaSubscribers = ConcurrentHashMap.newKeySet();
+
+    private final Set<String> rosterUsernames = new HashSet<>();
+    private final Map<String, Boolean> pendingOnlineStates = new HashMap<>();
+    private long rosterVersion;
+    private long publishedRosterVersion;
+
+    private ScheduledExecutorService tickExecutor;
+
+    public PresenceService(ServerController serverController) {
+        this.serverController = serverController;
+    }
+
+    public void start(long tickMillis, ThreadFactory tickThreadFactory) {
+        tickExecutor = Executors.newSingleThreadScheduledExecutor(tickThreadFactory);
+        tickExecutor.scheduleWithFixedDelay(this::publishPendingChanges, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public Message addOnlineUser(ChatUserRecord userRecord, boolean isDeltaSubscriber) {
+        synchronized (this) {
+            addRosterUsername(userRecord.username());
+            (isDeltaSubscriber ? deltaSubscribers : legacySubscribers).add(userRecord);
+            return Message.builder()
+                    .messageType(MessageType.LOGIN_ACCEPTED)
+                    .connectedUsernames(new HashSet<>(rosterUsernames))
+                    .rosterVersion(isDeltaSubscriber ? rosterVersion : null)
+                    .build();
+        }
+    }
+
+    public void announceOnlineUser(ChatUserRecord userRecord) {
+        sendToLegacySubscribers(MessageType.NEW_USER_ADDED, userRecord.username());
+    }
+
+    public void removeOnlineUser(ChatUserRecord userRecord) {
+        unsubscribe(userRecord);
+        removeRemoteUsername(userRecord.username());
+    }
+
+    public void unsubscribe(ChatUserRecord userRecord) {
+        legacySubscribers.remove(userRecord);
+        deltaSubscribers.remove(userRecord);
+    }
+
+    public void addRemoteUsername(String username) {
+        synchronized (this) {
+            if (!addRosterUsername(username)) {
+                return;
+            }
+        }
+        sendToLegacySubscribers(MessageType.NEW_USER_ADDED, username);
+    }
+
+    public void removeRemoteUsername(String username) {
+        synchronized (this) {
+            if (!rosterUsernames.remove(username)) {
+                return;
+            }
+            rosterVersion++;
+            pendingOnlineStates.put(username, Boolean.FALSE);
+        }
+        sendToLegacySubscribers(MessageType.USER_DELETED, username);
+    }
+
+    private boolean addRosterUsername(String username) {
+        if (!rosterUsernames.add(username)) {
+            return false;
+        }
+        rosterVersion++;
+        pendingOnlineStates.put(username, Boolean.TRUE);
+        return true;
+    }
+
+    public synchronized Message buildRosterSnapshot() {
+        return Message.builder()
+                .messageType(MessageType.PRESENCE_SNAPSHOT)
+                .connectedUsernames(new HashSet<>(rosterUsernames))
+                .rosterVersion(rosterVersion)
+                .build();
+    }
+
+    private void sendToLegacySubscribers(MessageType presenceType, String username) {
+        EncodedFrame frame = EncodedFrame.encode(Message.builder()
+                .messageType(presenceType)
+                .messageText(username)
+                .roomName(Message.DEFAULT_ROOM_NAME)
+                .build());
+        sendToSubscribers(legacySubscribers, frame);
+    }
+
+    private void publishPendingChanges() {
+        Message presenceDelta;
+        synchronized (this) {
+            if (pendingOnlineStates.isEmpty()) {
+                return;
+            }
+            Set<String> connectedUsernames = new HashSet<>();
+            Set<String> disconnectedUsernames = new HashSet<>();
+            for (Map.Entry<String, Boolean> onlineState : pendingOnlineStates.entrySet()) {
+                (onlineState.getValue() ? connectedUsernames : disconnectedUsernames).add(onlineState.getKey());
+            }
+            presenceDelta = Message.builder()
+                    .messageType(MessageType.PRESENCE_DELTA)
+                    .connectedUsernames(connectedUsernames)
+                    .disconnectedUsernames(disconnectedUsernames)
+                    .baseRosterVersion(publishedRosterVersion)
+                    .rosterVersion(rosterVersion)
+                    .build();
+            publishedRosterVersion = rosterVersion;
+            pendingOnlineStates.clear();
+        }
+        sendToSubscribers(deltaSubscribers, EncodedFrame.encode(presenceDelta));
+    }
+
+    private void sendToSubscribers(Set<ChatUserRecord> subscribers, EncodedFrame frame) {
+        for (ChatUserRecord subscriber : subscribers) {
+            try {
+                subscriber.userConnection().send(frame);
+            } catch (Exception exception) {
+                serverController.addServiceMessageToServerLogs("Error sending presence changes to " + subscriber.username());
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        if (tickExecutor != null) {
+            tickExecutor.shutdownNow();
+        }
+        legacySubscribers.clear();
+        deltaSubscribers.clear();
+    }
+}
@@ -0,0 +1,10 @@
+package server;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+public interface RelayBus extends Closeable {
+    void start(RelayBusListener listener) throws IOException;
+
+    void publish(RelayEvent event);
+}
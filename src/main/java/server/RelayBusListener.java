@@ -0,0 +1,13 @@
+package server;
+
+import java.net.SocketAddress;
+
+public interface RelayBusListener {
+    void onRelayEvent(RelayEvent event);
+
+    void onPeerLinkConnected(SocketAddress peerAddress);
+
+    void onNodeDisconnected(String nodeId);
+
+    void onRelayEventDropped(SocketAddress peerAddress);
+}
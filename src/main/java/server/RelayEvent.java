@@ -0,0 +1,14 @@
+package server;
+
+import connection.Message;
+import lombok.Builder;
+import lombok.Getter;
+
+@Getter
+@Builder
+public class RelayEvent {
+    private final RelayEventType eventType;
+    private final String nodeId;
+    private final String username;
+    private final Message message;
+}
@@ -0,0 +1,9 @@
+package server;
+
+public enum RelayEventType {
+    NODE_HELLO,
+    USER_JOINED,
+    USER_LEFT,
+    TEXT_MESSAGE,
+    PRIVATE_MESSAGE
+}
@@ -1,30 +1,55 @@
 package server;
 
 import connection.*;
-import utilities.FormatMessagesBuilder;
+import utilities.HashedWheelTimer;
+import utilities.Lifecycle;
+import utilities.TokenBucket;
 
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.net.ConnectException;
-import java.net.ServerSocket;
-import java.net.Socket;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 public class ServerController {
-    private ServerSocket serverSocket;
-    private ServerSwingView graphicView;
+    private ServerEngine serverEngine;
+    private ServerView serverView;
     private ServerModel serverModel;
-    private volatile boolean hasServerStarted = false;
-
-    private static final int PASSWORD_EXPIRATION_MILLIS_TIME = 120000;
+    private ServerSettings serverSettings = ServerSettings.builder().build();
+    private final Lifecycle lifecycle = new Lifecycle();
+    private HashedWheelTimer timer;
+    private MessageHistory messageHistory;
+    private PresenceService presenceService;
+    private FederationService federationService;
+    private ServerMetrics serverMetrics = createServerMetrics();
+    private ScheduledExecutorService metricsDumpExecutor;
+    private TokenBucket globalMessageRateLimiter;
+
+    private static final long TIMER_TICK_MILLIS = 100;
+    private static final int TIMER_TICKS_PER_WHEEL = 512;
 
     private final List<ServerObserver> observers = new ArrayList<>();
 
     public void launch() {
-        while (true) {
-            if (hasServerStarted) {
+        try {
+            long runGeneration = 0;
+            while (true) {
+                runGeneration = lifecycle.awaitNextRun(runGeneration);
                 acceptNewUserConnections();
-                hasServerStarted = false;
+                if (lifecycle.isRunning(runGeneration)) {
+                    stopServer();
+                }
             }
+        } catch (InterruptedException exception) {
+            addServiceMessageToServerLogs("Server launch loop was stopped by interrupt");
         }
     }
 
@@ -36,258 +61,521 @@ public class ServerController {
         observers.remove(observer);
     }
 
-    private void notifyObservers(Message message) {
+    protected void notifyObservers(Message message) {
         for (ServerObserver observer : observers) {
             observer.update(message);
         }
     }
 
     public boolean hasServerStarted() {
-        return hasServerStarted;
+        return lifecycle.isRunning();
     }
 
     public ServerModel getServerModel() {
         return serverModel;
     }
 
-    public void setGraphicView(ServerSwingView graphicView) {
-        this.graphicView = graphicView;
+    public ServerSettings getServerSettings() {
+        return serverSettings;
+    }
+
+    public PresenceService getPresenceService() {
+        return presenceService;
+    }
+
+    public HashedWheelTimer getTimer() {
+        return timer;
+    }
+
+    public TokenBucket getGlobalMessageRateLimiter() {
+        return globalMessageRateLimiter;
+    }
+
+    public ServerMetrics getServerMetrics() {
+        return serverMetrics;
+    }
+
+    public void setServerView(ServerView serverView) {
+        this.serverView = serverView;
     }
 
     public void setServerModel(ServerModel serverModel) {
         this.serverModel = serverModel;
     }
 
+    public void setServerSettings(ServerSettings serverSettings) {
+        this.serverSettings = serverSettings;
+    }
+
+    protected void addServiceMessageToServerLogs(String serviceMessage) {
+        serverView.addServiceMessage(serviceMessage);
+    }
+
+    protected UserSession createUserSession(MessageConnection userConnection) {
+        serverMetrics.recordAcceptedConnection();
+        return new UserSession(this, userConnection);
+    }
+
     protected void startServerOnPort(int port) throws Exception {
+        if (!lifecycle.compareAndSetState(Lifecycle.State.STOPPED, Lifecycle.State.STARTING)) {
+            throw new IllegalStateException("The server is not stopped yet");
+        }
         try {
-            serverSocket = new ServerSocket(port);
-            hasServerStarted = true;
+            serverEngine = serverSettings.getEngineType().createEngine(this, serverSettings);
+            serverEngine.bind(port);
+            startTimer();
+            openMessageHistory();
+            startPresenceService();
+            startFederationService();
+            startServerMetrics();
+            globalMessageRateLimiter = serverSettings.isGlobalRateLimitEnabled()
+                    ? new TokenBucket(serverSettings.getGlobalMessagesPerSecond(), serverSettings.getGlobalMessagesBurst())
+                    : null;
+            lifecycle.setState(Lifecycle.State.RUNNING);
             generateNewSessionPassword();
-            new SessionPasswordUpdater().start();
-            graphicView.addServiceMessageToServerLogsTextArea(FormatMessagesBuilder.buildMessageWithDateNow(
-                    "Server has launched on port " + port));
+            scheduleSessionPasswordRotation();
+            addServiceMessageToServerLogs("Server has launched on port " + port + " with " + serverSettings.getEngineType() + " engine");
         } catch (Exception exception) {
-            graphicView.addServiceMessageToServerLogsTextArea(FormatMessagesBuilder.buildMessageWithDateNow(
-                    "Couldn't launch the server"));
+            addServiceMessageToServerLogs("Couldn't launch the server");
+            closeServerEngineQuietly();
+            closeMessageHistory();
+            closeFederationService();
+            closePresenceService();
+            stopServerMetrics();
+            closeTimer();
+            lifecycle.setState(Lifecycle.State.STOPPED);
             throw exception;
         }
     }
 
     protected void stopServer() {
         String finalMessage = null;
+        boolean isStopping = false;
         try {
-            if (serverSocket != null && !serverSocket.isClosed()) {
-                closeConnectionsWithAllUsers();
-                serverSocket.close();
+            if (lifecycle.compareAndSetState(Lifecycle.State.RUNNING, Lifecycle.State.STOPPING)) {
+                isStopping = true;
+                shutDownGracefully();
                 finalMessage = "Server was stopped";
             } else {
                 finalMessage = "Invalid operation. Server is not running yet";
             }
         } catch (Exception exception) {
-            finalMessage = "Couldn't stop the server. Try again...";
+            closeServerEngineQuietly();
+            closeMessageHistory();
+            closeFederationService();
+            closePresenceService();
+            stopServerMetrics();
+            closeTimer();
+            finalMessage = "Server was stopped with errors";
         } finally {
-            graphicView.addServiceMessageToServerLogsTextArea(FormatMessagesBuilder.buildMessageWithDateNow(finalMessage));
+            addServiceMessageToServerLogs(finalMessage);
+            if (isStopping) {
+                lifecycle.setState(Lifecycle.State.STOPPED);
+            }
         }
     }
 
-    protected void generateNewSessionPassword() {
-        if (hasServerStarted) {
-            serverModel.updateCurrentSessionPassword();
-            graphicView.addServiceMessageToServerLogsTextArea(FormatMessagesBuilder.buildMessageWithDateNow(
-                    "Password for current session: " + serverModel.getCurrentSessionPassword()));
-        } else {
-            graphicView.addServiceMessageToServerLogsTextArea(FormatMessagesBuilder.buildMessageWithDateNow(
-                    "Invalid operation. Server is not running yet"));
+    /**
+     * Stops accepting, tells every online user why the connection is going away with one shared frame,
+     * lets all connections flush their queues in parallel until the drain deadline and force-closes the rest.
+     */
+    private void shutDownGracefully() throws IOException, InterruptedException {
+        long shutdownStartNanos = System.nanoTime();
+        serverEngine.stopAccepting();
+        closeTimer();
+        closeFederationService();
+        closePresenceService();
+        long stopAcceptingNanos = System.nanoTime();
+
+        List<ChatUserRecord> onlineUsers = new ArrayList<>(serverModel.getOnlineUsers());
+        sendBroadcastFrame(EncodedFrame.encode(new Message(MessageType.SERVER_SHUTDOWN, "The server is shutting down")));
+        Set<String> onlineUsernames = new HashSet<>();
+        for (ChatUserRecord userRecord : onlineUsers) {
+            onlineUsernames.add(userRecord.username());
+        }
+        serverModel.removeAllOnlineUsers();
+        notifyObservers(new Message(MessageType.NOTIFY_REMOVE, onlineUsernames));
+        long announceNanos = System.nanoTime();
+
+        List<CompletableFuture<Void>> closeFutures = new ArrayList<>(onlineUsers.size());
+        for (ChatUserRecord userRecord : onlineUsers) {
+            closeFutures.add(userRecord.userConnection().closeGracefully());
+        }
+        try {
+            CompletableFuture.allOf(closeFutures.toArray(CompletableFuture<?>[]::new))
+                    .get(serverSettings.getShutdownDrainMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | ExecutionException ignored) {
+        }
+        long drainNanos = System.nanoTime();
+
+        int forceClosedConnectionsNumber = 0;
+        for (int i = 0; i < onlineUsers.size(); i++) {
+            if (!closeFutures.get(i).isDone()) {
+                forceClosedConnectionsNumber++;
+                try {
+                    onlineUsers.get(i).userConnection().close();
+                } catch (IOException ignored) {
+                }
+            }
         }
+        serverEngine.close();
+        closeMessageHistory();
+        long forceCloseNanos = System.nanoTime();
+
+        addServiceMessageToServerLogs(serverMetrics.buildSnapshot());
+        stopServerMetrics();
+        addServiceMessageToServerLogs(String.format("Shutdown took %d ms: stop accepting %d ms, announce to %d users %d ms,"
+                        + " drain %d connections %d ms, force-close %d connections %d ms",
+                TimeUnit.NANOSECONDS.toMillis(forceCloseNanos - shutdownStartNanos),
+                TimeUnit.NANOSECONDS.toMillis(stopAcceptingNanos - shutdownStartNanos),
+                onlineUsers.size(), TimeUnit.NANOSECONDS.toMillis(announceNanos - stopAcceptingNanos),
+                onlineUsers.size() - forceClosedConnectionsNumber, TimeUnit.NANOSECONDS.toMillis(drainNanos - announceNanos),
+                forceClosedConnectionsNumber, TimeUnit.NANOSECONDS.toMillis(forceCloseNanos - drainNanos)));
     }
 
-    protected String getCurrentSessionPassword() throws ConnectException {
-        if (hasServerStarted) {
-            return serverModel.getCurrentSessionPassword();
-        } else {
-            graphicView.addServiceMessageToServerLogsTextArea(FormatMessagesBuilder.buildMessageWithDateNow(
-                    "Invalid operation. Server is not running yet"));
-            throw new ConnectException();
+    private void closeServerEngineQuietly() {
+        try {
+            if (serverEngine != null) {
+                serverEngine.close();
+            }
+        } catch (IOException ignored) {
         }
     }
 
-    private void closeConnectionsWithAllUsers() throws IOException {
-        Map<String, UserConnection> onlineUsersConnections = serverModel.getOnlineUsersConnections();
-        for (UserConnection userConnection : onlineUsersConnections.values()) {
-            userConnection.close();
+    private void startTimer() {
+        timer = new HashedWheelTimer(serverSettings.getEngineType().createThreadFactory("Timer-"),
+                TIMER_TICK_MILLIS, TimeUnit.MILLISECONDS, TIMER_TICKS_PER_WHEEL);
+        timer.start();
+    }
+
+    private void closeTimer() {
+        if (timer != null) {
+            timer.close();
         }
-        for (String username : onlineUsersConnections.keySet()) {
-            notifyObservers(new Message(MessageType.NOTIFY_REMOVE, username));
+    }
+
+    private void scheduleSessionPasswordRotation() {
+        timer.newTimeout(this::rotateSessionPassword, serverSettings.getPasswordExpirationMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private void rotateSessionPassword() {
+        if (!lifecycle.isRunning()) {
+            return;
         }
+        generateNewSessionPassword();
+        scheduleSessionPasswordRotation();
+    }
 
-        serverModel.getOnlineUsersConnections().clear();
-        serverModel.getOnlineUsersMetaInfos().clear();
+    private void openMessageHistory() throws IOException {
+        if (!serverSettings.isHistoryEnabled()) {
+            return;
+        }
+        messageHistory = MessageHistory.open(serverSettings);
+        serverModel.restoreLastMessageSequenceNumber(Message.DEFAULT_ROOM_NAME, messageHistory.getLastSequenceNumber(Message.DEFAULT_ROOM_NAME));
+        addServiceMessageToServerLogs("Chat history is stored in " + serverSettings.getHistoryDirectory()
+                + ", last record number " + messageHistory.getLastRecordNumber()
+                + ", last message number in " + Message.DEFAULT_ROOM_NAME + " " + messageHistory.getLastSequenceNumber(Message.DEFAULT_ROOM_NAME));
     }
 
-    protected void acceptNewUserConnections() {
-        while (true) {
-            try {
-                Socket socket = serverSocket.accept();
-                new UserConnectionHandler(socket).start();
-            } catch (Exception e) {
-                graphicView.addServiceMessageToServerLogsTextArea(FormatMessagesBuilder.buildMessageWithDateNow(
-                        "Connection to the server is lost"));
-                break;
-            }
+    private void closeMessageHistory() {
+        if (messageHistory != null) {
+            messageHistory.close();
+            messageHistory = null;
         }
     }
 
-    protected void sendBroadcastMessage(Message message) {
-        for (UserConnection userConnection : serverModel.getOnlineUsersConnections().values()) {
+    private void startPresenceService() {
+        presenceService = new PresenceService(this);
+        presenceService.start(serverSettings.getPresenceTickMillis(),
+                serverSettings.getEngineType().createThreadFactory("PresenceTicker-"));
+    }
+
+    private void closePresenceService() {
+        if (presenceService != null) {
+            presenceService.close();
+        }
+    }
+
+    private void startFederationService() throws IOException {
+        if (!serverSettings.isFederationEnabled()) {
+            return;
+        }
+        RelayBus relayBus = new LoopbackTcpRelayBus(serverSettings.getFederationNodeId(), serverSettings.getRelayPort(),
+                LoopbackTcpRelayBus.parsePeerAddresses(serverSettings.getRelayPeers()),
+                serverSettings.getEngineType().createThreadFactory("RelayBus-"));
+        federationService = new FederationService(this, relayBus, serverSettings.getFederationNodeId());
+        federationService.start();
+        addServiceMessageToServerLogs("Node " + federationService.getNodeId() + " joined the relay bus on port " + serverSettings.getRelayPort());
+    }
+
+    private void closeFederationService() {
+        if (federationService != null) {
             try {
-                userConnection.send(message);
-            } catch (Exception e) {
-                graphicView.addServiceMessageToServerLogsTextArea(FormatMessagesBuilder.buildMessageWithDateNow(
-                        "Error sending a message to all users"));
+                federationService.close();
+            } catch (IOException ignored) {
             }
+            federationService = null;
         }
     }
 
-    private class UserConnectionHandler extends Thread {
-        private final Socket userSocket;
-        private ChatUserRecord userRecord;
+    private ServerMetrics createServerMetrics() {
+        return new ServerMetrics(() -> serverModel == null ? List.of() : serverModel.getOnlineUsers());
+    }
 
-        public UserConnectionHandler(Socket userSocket) {
-            this.userSocket = userSocket;
+    private void startServerMetrics() {
+        serverMetrics = createServerMetrics();
+        registerServerMetricsBean();
+        if (serverSettings.isMetricsDumpEnabled()) {
+            metricsDumpExecutor = Executors.newSingleThreadScheduledExecutor(
+                    serverSettings.getEngineType().createThreadFactory("MetricsDumper-"));
+            metricsDumpExecutor.scheduleAtFixedRate(() -> addServiceMessageToServerLogs(serverMetrics.buildSnapshot()),
+                    serverSettings.getMetricsDumpIntervalSeconds(), serverSettings.getMetricsDumpIntervalSeconds(), TimeUnit.SECONDS);
         }
+    }
 
-        private void connectNewUser(UserConnection userConnection) throws IOException {
-            while (true) {
-                try {
-                    Message responseForUsername = requestUsernameFromNewUser(userConnection);
-                    Message responseForPassword = requestCurrentSessionPasswordFromNewUser(userConnection);
-                    userRecord = new ChatUserRecord(userConnection, getUsernameFromResponseMessage(responseForUsername));
-                    if (MessageType.isTypeNewUsername(responseForUsername.getMessageType())
-                            && MessageType.isTypeNewPassword(responseForPassword.getMessageType())
-                            && isUsernameAvailableToAdd(userRecord.username())
-                            && serverModel.isCurrentSessionPasswordCorrect(responseForPassword.getMessageText())) {
-                        addNewUserToServerModel();
-                        sendToNewUserAllOnlineUsernamesByConnection(userConnection);
-                        sendBroadcastMessage(new Message(MessageType.NEW_USER_ADDED, userRecord.username()));
-                        break;
-                    } else {
-                        userConnection.send(new Message(MessageType.LOGIN_ERROR));
-                    }
-                } catch (Exception exception) {
-                    exception.printStackTrace();
-                    graphicView.addServiceMessageToServerLogsTextArea(FormatMessagesBuilder.buildMessageWithDateNow(
-                            "An error occurred when connecting a new user"));
-                    removeUserFromServerModel();
-                    throw exception;
-                }
+    private void stopServerMetrics() {
+        if (metricsDumpExecutor != null) {
+            metricsDumpExecutor.shutdownNow();
+            metricsDumpExecutor = null;
+        }
+        unregisterServerMetricsBean();
+    }
+
+    private void registerServerMetricsBean() {
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName metricsBeanName = new ObjectName(ServerMetricsMXBean.OBJECT_NAME);
+            if (mBeanServer.isRegistered(metricsBeanName)) {
+                mBeanServer.unregisterMBean(metricsBeanName);
             }
+            mBeanServer.registerMBean(serverMetrics, metricsBeanName);
+        } catch (JMException exception) {
+            addServiceMessageToServerLogs("Couldn't register server metrics in JMX");
         }
+    }
 
-        private void addNewUserToServerModel() {
-            serverModel.addNewUserConnection(userRecord.username(), userRecord.userConnection());
-            serverModel.addNewUserMetaInfo(userRecord.username(),
-                    UserMetaInfo.builder()
-                            .firstConnectionTime(FormatMessagesBuilder.buildDateNow())
-                            .username(userRecord.username())
-                            .allSentMessagesNumber(0)
-                            .lastMessageTime(FormatMessagesBuilder.buildDateNow())
-                            .build());
-            notifyObservers(new Message(MessageType.NOTIFY_ADD, userRecord.username()));
+    private void unregisterServerMetricsBean() {
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName metricsBeanName = new ObjectName(ServerMetricsMXBean.OBJECT_NAME);
+            if (mBeanServer.isRegistered(metricsBeanName)) {
+                mBeanServer.unregisterMBean(metricsBeanName);
+            }
+        } catch (JMException ignored) {
         }
+    }
 
-        private Message requestUsernameFromNewUser(UserConnection userConnection) throws IOException {
-            userConnection.send(new Message(MessageType.REQUEST_USERNAME));
-            return userConnection.receive();
+    protected void generateNewSessionPassword() {
+        if (lifecycle.isRunning()) {
+            serverModel.updateCurrentSessionPassword();
+            addServiceMessageToServerLogs("Password for current session: " + serverModel.getCurrentSessionPassword());
+        } else {
+            addServiceMessageToServerLogs("Invalid operation. Server is not running yet");
         }
+    }
 
-        private Message requestCurrentSessionPasswordFromNewUser(UserConnection userConnection) throws IOException {
-            userConnection.send(new Message(MessageType.REQUEST_PASSWORD));
-            return userConnection.receive();
+    protected String getCurrentSessionPassword() throws ConnectException {
+        if (lifecycle.isRunning()) {
+            return serverModel.getCurrentSessionPassword();
+        } else {
+            addServiceMessageToServerLogs("Invalid operation. Server is not running yet");
+            throw new ConnectException();
         }
+    }
 
-        private String getUsernameFromResponseMessage(Message responseMessage) {
-            return responseMessage.getMessageText();
+    protected boolean addNewOnlineUser(ChatUserRecord userRecord) {
+        FederationService currentFederationService = federationService;
+        if (currentFederationService == null) {
+            return serverModel.addNewOnlineUserIfAbsent(userRecord);
         }
+        return currentFederationService.addLocalUserIfUnclaimed(userRecord);
+    }
 
-        private boolean isUsernameAvailableToAdd(String username) {
-            return username != null && !username.isEmpty() && !serverModel.getOnlineUsersConnections().containsKey(username);
+    protected boolean removeOnlineUser(ChatUserRecord userRecord) {
+        if (!serverModel.removeOnlineUser(userRecord)) {
+            return false;
         }
+        FederationService currentFederationService = federationService;
+        if (currentFederationService != null) {
+            currentFederationService.publishUserLeft(userRecord.username());
+        }
+        return true;
+    }
 
-        private void sendToNewUserAllOnlineUsernamesByConnection(UserConnection userConnection) {
-            Set<String> listUsers = new HashSet<>(serverModel.getOnlineUsersConnections().keySet());
-            userConnection.send(new Message(MessageType.LOGIN_ACCEPTED, listUsers));
+    protected void disconnectDuplicateUser(ChatUserRecord userRecord, String ownerNodeId) {
+        if (!disconnectOnlineUser(userRecord, true)) {
+            return;
         }
+        addServiceMessageToServerLogs("The user " + userRecord.username() + " was disconnected, the username belongs to node " + ownerNodeId);
+    }
 
-        private void startMessagingBetweenUsers() {
-            while (true) {
-                try {
-                    Message messageFromUser = userRecord.userConnection().receive();
-
-                    if (MessageType.isTypeTextMessage(messageFromUser.getMessageType())) {
-                        sendMessageFromUserToEveryone(messageFromUser);
-                    }
-
-                    if (MessageType.isTypeDisconnect(messageFromUser.getMessageType())) {
-                        disableExistedUserFromChat();
-                        break;
-                    }
-                } catch (Exception exception) {
-                    graphicView.addServiceMessageToServerLogsTextArea(FormatMessagesBuilder.buildMessageWithDateNow(
-                            "An error occurred when sending a message from user " + userRecord.username() + " with address " + userSocket.getRemoteSocketAddress()));
-                    removeUserFromServerModel();
-                    break;
-                }
+    /**
+     * Disconnects an online user on the server's initiative. The user's session finds its rooms already left
+     * afterwards, so the members of every room the user was in get USER_DELETED from here.
+     * When the username now belongs to another node it stays in the roster and only the presence subscription
+     * is dropped; otherwise the username leaves the roster and the other nodes are told.
+     */
+    private boolean disconnectOnlineUser(ChatUserRecord userRecord, boolean isUsernameTakenOver) {
+        if (!(isUsernameTakenOver ? serverModel.removeOnlineUser(userRecord) : removeOnlineUser(userRecord))) {
+            return false;
+        }
+        for (String roomName : serverModel.leaveAllRooms(userRecord)) {
+            if (!Message.DEFAULT_ROOM_NAME.equals(roomName)) {
+                sendRoomMessage(roomName, Message.builder()
+                        .messageType(MessageType.USER_DELETED)
+                        .messageText(userRecord.username())
+                        .roomName(roomName)
+                        .build());
             }
         }
+        if (isUsernameTakenOver) {
+            presenceService.unsubscribe(userRecord);
+        } else {
+            presenceService.removeOnlineUser(userRecord);
+        }
+        notifyObservers(new Message(MessageType.NOTIFY_REMOVE, userRecord.username()));
+        userRecord.metaInfo().markDisconnectedByServer();
+        try {
+            userRecord.userConnection().close();
+        } catch (IOException ignored) {
+        }
+        return true;
+    }
 
-        private void sendMessageFromUserToEveryone(Message message) {
-            String textMessage = FormatMessagesBuilder.buildChatTextAreaUserMessage(userRecord.username(), message.getMessageText());
-            sendBroadcastMessage(new Message(MessageType.TEXT_MESSAGE, textMessage));
-            serverModel.getUserMetaInfoByUsername(userRecord.username()).updateLastMessageTime();
+    protected void disconnectIdleUser(ChatUserRecord userRecord) {
+        if (!disconnectOnlineUser(userRecord, false)) {
+            return;
         }
+        addServiceMessageToServerLogs("The user " + userRecord.username() + " was disconnected after "
+                + serverSettings.getReadIdleTimeoutSeconds() + " seconds of silence");
+    }
 
-        private void disableExistedUserFromChat() throws IOException {
-            sendBroadcastMessage(new Message(MessageType.USER_DELETED, userRecord.username()));
-            removeUserFromServerModel();
-            userRecord.userConnection().close();
-            graphicView.addServiceMessageToServerLogsTextArea(FormatMessagesBuilder.buildMessageWithDateNow(
-                    "The user with remote address " + userSocket.getRemoteSocketAddress() + " has disconnected"));
+    protected void acceptNewUserConnections() {
+        try {
+            serverEngine.acceptConnections();
+        } catch (Exception e) {
+            addServiceMessageToServerLogs("Connection to the server is lost");
         }
+    }
 
-        private void removeUserFromServerModel() {
-            serverModel.removeUserConnectionByUsername(userRecord.username());
-            serverModel.removeUserMetaInfoByUsername(userRecord.username());
-            notifyObservers(new Message(MessageType.NOTIFY_REMOVE, userRecord.username()));
+    protected void sendBroadcastMessage(Message message) {
+        sendBroadcastFrame(EncodedFrame.encode(message));
+    }
+
+    protected void sendBroadcastFrame(EncodedFrame frame) {
+        FanOutEvent fanOutEvent = new FanOutEvent();
+        fanOutEvent.begin();
+        long fanOutStartNanos = System.nanoTime();
+        int recipientsNumber = 0;
+        for (ChatUserRecord userRecord : serverModel.getOnlineUsers()) {
+            try {
+                userRecord.userConnection().send(frame);
+                recipientsNumber++;
+            } catch (Exception e) {
+                addServiceMessageToServerLogs("Error sending a message to all users");
+            }
         }
+        serverMetrics.recordFanOut(System.nanoTime() - fanOutStartNanos);
+        commitFanOutEvent(fanOutEvent, null, frame, recipientsNumber);
+    }
 
-        @Override
-        public void run() {
-            graphicView.addServiceMessageToServerLogsTextArea(FormatMessagesBuilder.buildMessageWithDateNow(
-                    "A new user connected with a remote socket " + userSocket.getRemoteSocketAddress().toString()));
+    protected void sendRoomMessage(String roomName, Message message) {
+        sendRoomFrame(roomName, EncodedFrame.encode(message));
+    }
+
+    protected void sendRoomFrame(String roomName, EncodedFrame frame) {
+        ChatRoom room = serverModel.getRoom(roomName);
+        if (room == null) {
+            return;
+        }
+        FanOutEvent fanOutEvent = new FanOutEvent();
+        fanOutEvent.begin();
+        long fanOutStartNanos = System.nanoTime();
+        int recipientsNumber = 0;
+        for (ChatUserRecord userRecord : room.getMembers()) {
             try {
-                UserConnection userConnection = new UserConnection(userSocket);
-                connectNewUser(userConnection);
-                startMessagingBetweenUsers();
-            } catch (Exception exception) {
-                graphicView.addServiceMessageToServerLogsTextArea(FormatMessagesBuilder.buildMessageWithDateNow(
-                        "An error occurred when sending a message from a user"));
+                userRecord.userConnection().send(frame);
+                recipientsNumber++;
+            } catch (Exception e) {
+                addServiceMessageToServerLogs("Error sending a message to the room " + roomName);
             }
         }
+        serverMetrics.recordFanOut(System.nanoTime() - fanOutStartNanos);
+        commitFanOutEvent(fanOutEvent, roomName, frame, recipientsNumber);
     }
 
-    private class SessionPasswordUpdater extends Thread {
-        @Override
-        public void run() {
-            while (true) {
-                try {
-                    Thread.sleep(PASSWORD_EXPIRATION_MILLIS_TIME);
-                    generateNewSessionPassword();
-                } catch (InterruptedException exception) {
-                    graphicView.addServiceMessageToServerLogsTextArea(FormatMessagesBuilder.buildMessageWithDateNow(
-                            "SessionPasswordUpdater was stopped by interrupt"));
-                    break;
-                }
+    private void commitFanOutEvent(FanOutEvent fanOutEvent, String roomName, EncodedFrame frame, int recipientsNumber) {
+        fanOutEvent.end();
+        if (fanOutEvent.shouldCommit()) {
+            fanOutEvent.roomName = roomName;
+            fanOutEvent.messageType = String.valueOf(frame.getMessage().getMessageType());
+            fanOutEvent.recipientsNumber = recipientsNumber;
+            fanOutEvent.commit();
+        }
+    }
+
+    protected void sendTextMessageToRoom(String senderUsername, String messageText, ChatRoom room) {
+        Message textMessage;
+        synchronized (room.getMessageOrderLock()) {
+            textMessage = Message.builder()
+                    .messageType(MessageType.TEXT_MESSAGE)
+                    .messageText(messageText)
+                    .senderUsername(senderUsername)
+                    .sequenceNumber(room.nextMessageSequenceNumber())
+                    .timestampMillis(System.currentTimeMillis())
+                    .roomName(room.getRoomName())
+                    .build();
+            sendRoomFrame(room.getRoomName(), storeInMessageHistory(textMessage));
+        }
+        FederationService currentFederationService = federationService;
+        if (currentFederationService != null) {
+            currentFederationService.publishTextMessage(textMessage);
+        }
+    }
+
+    protected void sendRemoteTextMessageToRoom(Message remoteTextMessage) {
+        if (remoteTextMessage == null || remoteTextMessage.getRoomName() == null) {
+            return;
+        }
+        Message textMessage = Message.builder()
+                .messageType(MessageType.TEXT_MESSAGE)
+                .messageText(remoteTextMessage.getMessageText())
+                .senderUsername(remoteTextMessage.getSenderUsername())
+                .timestampMillis(remoteTextMessage.getTimestampMillis())
+                .roomName(remoteTextMessage.getRoomName())
+                .build();
+        sendRoomFrame(textMessage.getRoomName(), storeInMessageHistory(textMessage));
+    }
+
+    protected boolean sendPrivateMessageToOtherNode(Message privateMessage) {
+        FederationService currentFederationService = federationService;
+        return currentFederationService != null && currentFederationService.publishPrivateMessage(privateMessage);
+    }
+
+    private EncodedFrame storeInMessageHistory(Message message) {
+        MessageHistory currentMessageHistory = messageHistory;
+        if (currentMessageHistory != null) {
+            try {
+                return currentMessageHistory.append(message);
+            } catch (IOException exception) {
+                addServiceMessageToServerLogs("Couldn't store a message from user " + message.getSenderUsername() + " in the chat history");
+            }
+        }
+        return EncodedFrame.encode(message);
+    }
+
+    protected void sendMessageHistoryToUser(MessageConnection userConnection) {
+        MessageHistory currentMessageHistory = messageHistory;
+        if (currentMessageHistory == null || serverSettings.getHistoryReplayMessagesNumber() <= 0) {
+            return;
+        }
+        try {
+            for (Message historyMessage : currentMessageHistory.readLast(serverSettings.getHistoryReplayMessagesNumber(),
+                    historyMessage -> historyMessage.getRoomName() == null || Message.DEFAULT_ROOM_NAME.equals(historyMessage.getRoomName()))) {
+                userConnection.send(historyMessage);
             }
+        } catch (IOException exception) {
+            addServiceMessageToServerLogs("Couldn't read the chat history for " + userConnection.getRemoteSocketAddress());
         }
     }
-}
\ No newline at end of file
+}
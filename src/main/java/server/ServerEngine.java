@@ -0,0 +1,17 @@
+package server;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+public interface ServerEngine extends Closeable {
+    void bind(int port) throws IOException;
+
+    void acceptConnections() throws IOException;
+
+    /**
+     * Closes the listening socket but keeps serving the connections that are already open.
+     */
+    void stopAccepting() throws IOException;
+
+    boolean isClosed();
+}
@@ -0,0 +1,28 @@
+package server;
+
+import java.util.concurrent.ThreadFactory;
+
+public enum ServerEngineType {
+    BLOCKING,
+    VIRTUAL_THREADS,
+    NIO;
+
+    public ServerEngine createEngine(ServerController serverController, ServerSettings serverSettings) {
+        return switch (this) {
+            case BLOCKING, VIRTUAL_THREADS -> new BlockingServerEngine(serverController, serverSettings,
+                    createThreadFactory("UserConnectionHandler-"), createThreadFactory("UserConnectionWriter-"));
+            case NIO -> new NioServerEngine(serverController, serverSettings);
+        };
+    }
+
+    public ThreadFactory createThreadFactory(String threadNamePrefix) {
+        if (this == VIRTUAL_THREADS) {
+            return Thread.ofVirtual().name(threadNamePrefix, 0).factory();
+        }
+        return Thread.ofPlatform().name(threadNamePrefix, 0).factory();
+    }
+
+    public static ServerEngineType fromName(String name) {
+        return valueOf(name.trim().toUpperCase().replace('-', '_'));
+    }
+}
@@ -0,0 +1,30 @@
+package server;
+
+import org.apache.commons.cli.ParseException;
+
+public class ServerHeadlessLauncher {
+    public static void main(String[] args) throws Exception {
+        ServerSettingsParser settingsParser = new ServerSettingsParser();
+        ServerSettings serverSettings;
+        try {
+            serverSettings = settingsParser.parse(args);
+        } catch (ParseException | IllegalArgumentException exception) {
+            System.err.println(exception.getMessage());
+            settingsParser.printHelp("ServerHeadlessLauncher");
+            System.exit(1);
+            return;
+        }
+
+        ServerController serverController = new ServerController();
+        ServerLogView logView = new ServerLogView();
+
+        serverController.addObserver(logView);
+        serverController.setServerView(logView);
+        serverController.setServerModel(new ServerModel());
+        serverController.setServerSettings(serverSettings);
+
+        serverController.startServerOnPort(serverSettings.getPort());
+        Runtime.getRuntime().addShutdownHook(new Thread(serverController::stopServer));
+        serverController.launch();
+    }
+}
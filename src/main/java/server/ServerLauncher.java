@@ -1,13 +1,15 @@
 package server;
 
 public class ServerLauncher {
-    public static void main(String[] args) {
+    public static void main(String[] args) throws Exception {
+        ServerSettings serverSettings = new ServerSettingsParser().parse(args);
         ServerController serverController = new ServerController();
-        ServerSwingView graphicView = new ServerSwingView(serverController);
+        ServerSwingView graphicView = new ServerSwingView(serverController, serverSettings);
 
         serverController.addObserver(graphicView);
-        serverController.setGraphicView(graphicView);
+        serverController.setServerView(graphicView);
         serverController.setServerModel(new ServerModel());
+        serverController.setServerSettings(serverSettings);
 
         serverController.launch();
     }
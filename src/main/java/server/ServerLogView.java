@@ -0,0 +1,30 @@
+package server;
+
+import connection.Message;
+import connection.MessageType;
+import connection.ServerObserver;
+import org.apache.log4j.Logger;
+
+public class ServerLogView implements ServerView, ServerObserver {
+    private static final Logger logger = Logger.getLogger(ServerLogView.class);
+
+    @Override
+    public void addServiceMessage(String serviceMessage) {
+        logger.info(serviceMessage);
+    }
+
+    @Override
+    public void update(Message message) {
+        if (MessageType.isTypeNotifyToAdd(message.getMessageType())) {
+            logger.debug("Online user added: " + message.getMessageText());
+        }
+
+        if (MessageType.isTypeNotifyToRemove(message.getMessageType())) {
+            if (message.getConnectedUsernames() != null) {
+                logger.debug("Online users removed: " + message.getConnectedUsernames().size());
+            } else {
+                logger.debug("Online user removed: " + message.getMessageText());
+            }
+        }
+    }
+}
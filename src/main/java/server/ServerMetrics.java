@@ -0,0 +1,286 @@
+package server;
+
+import connection.ChatUserRecord;
+import utilities.LatencyHistogram;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+public class ServerMetrics implements ServerMetricsMXBean {
+    private static final int TOP_SENDERS_NUMBER = 5;
+    private static final long MIN_RATE_SAMPLE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final Supplier<Collection<ChatUserRecord>> onlineUsersSupplier;
+
+    private final LongAdder acceptedConnectionsNumber = new LongAdder();
+    private final LongAdder rejectedLoginsNumber = new LongAdder();
+    private final LongAdder throttleNoticesNumber = new LongAdder();
+    private final LongAdder receivedMessagesNumber = new LongAdder();
+    private final LongAdder sentMessagesNumber = new LongAdder();
+    private final LongAdder receivedBytesNumber = new LongAdder();
+    private final LongAdder sentBytesNumber = new LongAdder();
+    private final LongAdder writeBatchesNumber = new LongAdder();
+    private final LongAdder batchedFramesNumber = new LongAdder();
+    private final LongAdder batchedBytesNumber = new LongAdder();
+    private final LongAdder droppedRelayEventsNumber = new LongAdder();
+    private final LatencyHistogram handshakeDurations = new LatencyHistogram();
+    private final LatencyHistogram fanOutDurations = new LatencyHistogram();
+
+    private long previousSnapshotNanos = System.nanoTime();
+    private long previousReceivedMessagesNumber;
+    private long previousSentMessagesNumber;
+    private long previousReceivedBytesNumber;
+    private long previousSentBytesNumber;
+    private Map<String, Long> previousSentMessagesNumberByUser = new HashMap<>();
+
+    private long previousRateSampleNanos = System.nanoTime();
+    private Map<String, Long> previousRateSampleSentMessagesNumberByUser = new HashMap<>();
+    private Map<String, Double> sentMessagesRateByUser = new HashMap<>();
+
+    public ServerMetrics(Supplier<Collection<ChatUserRecord>> onlineUsersSupplier) {
+        this.onlineUsersSupplier = onlineUsersSupplier;
+    }
+
+    public void recordAcceptedConnection() {
+        acceptedConnectionsNumber.increment();
+    }
+
+    public void recordRejectedLogin() {
+        rejectedLoginsNumber.increment();
+    }
+
+    public void recordThrottleNotice() {
+        throttleNoticesNumber.increment();
+    }
+
+    public void recordHandshake(long durationNanos) {
+        handshakeDurations.record(durationNanos);
+    }
+
+    public void recordReceivedMessage() {
+        receivedMessagesNumber.increment();
+    }
+
+    public void recordReceivedBytes(long bytesNumber) {
+        receivedBytesNumber.add(bytesNumber);
+    }
+
+    public void recordSentMessages(int framesNumber, long bytesNumber) {
+        sentMessagesNumber.add(framesNumber);
+        sentBytesNumber.add(bytesNumber);
+    }
+
+    public void recordWriteBatch(int framesNumber, long bytesNumber) {
+        writeBatchesNumber.increment();
+        batchedFramesNumber.add(framesNumber);
+        batchedBytesNumber.add(bytesNumber);
+    }
+
+    public void recordDroppedRelayEvent() {
+        droppedRelayEventsNumber.increment();
+    }
+
+    public void recordFanOut(long durationNanos) {
+        fanOutDurations.record(durationNanos);
+    }
+
+    @Override
+    public long getAcceptedConnectionsNumber() {
+        return acceptedConnectionsNumber.sum();
+    }
+
+    @Override
+    public long getRejectedLoginsNumber() {
+        return rejectedLoginsNumber.sum();
+    }
+
+    @Override
+    public long getThrottleNoticesNumber() {
+        return throttleNoticesNumber.sum();
+    }
+
+    @Override
+    public double getHandshakeMillisP50() {
+        return handshakeDurations.getValueAtPercentile(50) / 1e6;
+    }
+
+    @Override
+    public double getHandshakeMillisP99() {
+        return handshakeDurations.getValueAtPercentile(99) / 1e6;
+    }
+
+    @Override
+    public long getReceivedMessagesNumber() {
+        return receivedMessagesNumber.sum();
+    }
+
+    @Override
+    public long getSentMessagesNumber() {
+        return sentMessagesNumber.sum();
+    }
+
+    @Override
+    public long getReceivedBytesNumber() {
+        return receivedBytesNumber.sum();
+    }
+
+    @Override
+    public long getSentBytesNumber() {
+        return sentBytesNumber.sum();
+    }
+
+    @Override
+    public double getFanOutMicrosP50() {
+        return fanOutDurations.getValueAtPercentile(50) / 1e3;
+    }
+
+    @Override
+    public double getFanOutMicrosP99() {
+        return fanOutDurations.getValueAtPercentile(99) / 1e3;
+    }
+
+    @Override
+    public double getFanOutMicrosMax() {
+        return fanOutDurations.getMax() / 1e3;
+    }
+
+    @Override
+    public long getQueuedFramesNumber() {
+        long queuedFramesNumber = 0;
+        for (ChatUserRecord userRecord : onlineUsersSupplier.get()) {
+            queuedFramesNumber += userRecord.userConnection().getQueuedFramesNumber();
+        }
+        return queuedFramesNumber;
+    }
+
+    @Override
+    public long getMaxUserQueuedFramesNumber() {
+        long maxQueuedFramesNumber = 0;
+        for (ChatUserRecord userRecord : onlineUsersSupplier.get()) {
+            maxQueuedFramesNumber = Math.max(maxQueuedFramesNumber, userRecord.userConnection().getQueuedFramesNumber());
+        }
+        return maxQueuedFramesNumber;
+    }
+
+    @Override
+    public long getWriteBatchesNumber() {
+        return writeBatchesNumber.sum();
+    }
+
+    @Override
+    public double getAverageFramesPerWriteBatch() {
+        long batches = writeBatchesNumber.sum();
+        return batches == 0 ? 0 : (double) batchedFramesNumber.sum() / batches;
+    }
+
+    @Override
+    public double getAverageBytesPerWriteBatch() {
+        long batches = writeBatchesNumber.sum();
+        return batches == 0 ? 0 : (double) batchedBytesNumber.sum() / batches;
+    }
+
+    @Override
+    public Map<String, Long> getSentMessagesNumberByUser() {
+        Map<String, Long> sentMessagesNumberByUser = new HashMap<>();
+        for (ChatUserRecord userRecord : onlineUsersSupplier.get()) {
+            sentMessagesNumberByUser.put(userRecord.username(), userRecord.metaInfo().getAllSentMessagesNumber());
+        }
+        return sentMessagesNumberByUser;
+    }
+
+    /**
+     * A user missing from the previous sample logged in after it, so all of their messages fall into the interval.
+     */
+    @Override
+    public synchronized Map<String, Double> getSentMessagesRateByUser() {
+        long sampleNanos = System.nanoTime();
+        if (sampleNanos - previousRateSampleNanos >= MIN_RATE_SAMPLE_INTERVAL_NANOS) {
+            double elapsedSeconds = (sampleNanos - previousRateSampleNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+            Map<String, Long> currentSentMessagesNumberByUser = getSentMessagesNumberByUser();
+            Map<String, Double> currentSentMessagesRateByUser = new HashMap<>();
+            currentSentMessagesNumberByUser.forEach((username, sentMessagesNumber) -> {
+                long delta = sentMessagesNumber - previousRateSampleSentMessagesNumberByUser.getOrDefault(username, 0L);
+                currentSentMessagesRateByUser.put(username, Math.max(0, delta) / elapsedSeconds);
+            });
+            previousRateSampleNanos = sampleNanos;
+            previousRateSampleSentMessagesNumberByUser = currentSentMessagesNumberByUser;
+            sentMessagesRateByUser = currentSentMessagesRateByUser;
+        }
+        return new HashMap<>(sentMessagesRateByUser);
+    }
+
+    @Override
+    public long getDroppedRelayEventsNumber() {
+        return droppedRelayEventsNumber.sum();
+    }
+
+    public synchronized String buildSnapshot() {
+        long snapshotNanos = System.nanoTime();
+        double elapsedSeconds = Math.max(1, snapshotNanos - previousSnapshotNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+        long currentReceivedMessagesNumber = getReceivedMessagesNumber();
+        long currentSentMessagesNumber = getSentMessagesNumber();
+        long currentReceivedBytesNumber = getReceivedBytesNumber();
+        long currentSentBytesNumber = getSentBytesNumber();
+        Map<String, Long> currentSentMessagesNumberByUser = getSentMessagesNumberByUser();
+
+        String snapshot = String.format("Metrics: connections accepted=%d rejected=%d throttle notices=%d"
+                        + " | handshake p50=%.2fms p99=%.2fms"
+                        + " | messages in=%d (%.1f/s) out=%d (%.1f/s)"
+                        + " | bytes in=%d (%.0f/s) out=%d (%.0f/s)"
+                        + " | fan-out p50=%.1fus p99=%.1fus max=%.1fus"
+                        + " | outbound queue total=%d max=%d"
+                        + " | write batches=%d avg frames=%.1f avg bytes=%.0f"
+                        + " | relay events dropped=%d"
+                        + " | top senders %s",
+                getAcceptedConnectionsNumber(), getRejectedLoginsNumber(), getThrottleNoticesNumber(),
+                getHandshakeMillisP50(), getHandshakeMillisP99(),
+                currentReceivedMessagesNumber, (currentReceivedMessagesNumber - previousReceivedMessagesNumber) / elapsedSeconds,
+                currentSentMessagesNumber, (currentSentMessagesNumber - previousSentMessagesNumber) / elapsedSeconds,
+                currentReceivedBytesNumber, (currentReceivedBytesNumber - previousReceivedBytesNumber) / elapsedSeconds,
+                currentSentBytesNumber, (currentSentBytesNumber - previousSentBytesNumber) / elapsedSeconds,
+                getFanOutMicrosP50(), getFanOutMicrosP99(), getFanOutMicrosMax(),
+                getQueuedFramesNumber(), getMaxUserQueuedFramesNumber(),
+                getWriteBatchesNumber(), getAverageFramesPerWriteBatch(), getAverageBytesPerWriteBatch(),
+                getDroppedRelayEventsNumber(),
+                buildTopSenderRates(currentSentMessagesNumberByUser, elapsedSeconds));
+
+        previousSnapshotNanos = snapshotNanos;
+        previousReceivedMessagesNumber = currentReceivedMessagesNumber;
+        previousSentMessagesNumber = currentSentMessagesNumber;
+        previousReceivedBytesNumber = currentReceivedBytesNumber;
+        previousSentBytesNumber = currentSentBytesNumber;
+        previousSentMessagesNumberByUser = currentSentMessagesNumberByUser;
+        return snapshot;
+    }
+
+    private String buildTopSenderRates(Map<String, Long> currentSentMessagesNumberByUser, double elapsedSeconds) {
+        Map<String, Long> sentMessagesNumberDeltas = new HashMap<>();
+        currentSentMessagesNumberByUser.forEach((username, sentMessagesNumber) -> {
+            long delta = sentMessagesNumber - previousSentMessagesNumberByUser.getOrDefault(username, 0L);
+            if (delta > 0) {
+                sentMessagesNumberDeltas.put(username, delta);
+            }
+        });
+        List<Map.Entry<String, Long>> topSenders = sentMessagesNumberDeltas.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()))
+                .limit(TOP_SENDERS_NUMBER)
+                .toList();
+        if (topSenders.isEmpty()) {
+            return "none";
+        }
+        StringBuilder topSenderRates = new StringBuilder();
+        for (Map.Entry<String, Long> topSender : topSenders) {
+            if (!topSenderRates.isEmpty()) {
+                topSenderRates.append(", ");
+            }
+            topSenderRates.append(String.format("%s %.1f/s", topSender.getKey(), topSender.getValue() / elapsedSeconds));
+        }
+        return topSenderRates.toString();
+    }
+}
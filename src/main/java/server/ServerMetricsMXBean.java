@@ -0,0 +1,51 @@
+package server;
+
+import java.util.Map;
+
+public interface ServerMetricsMXBean {
+    String OBJECT_NAME = "server:type=ServerMetrics";
+
+    long getAcceptedConnectionsNumber();
+
+    long getRejectedLoginsNumber();
+
+    long getThrottleNoticesNumber();
+
+    double getHandshakeMillisP50();
+
+    double getHandshakeMillisP99();
+
+    long getReceivedMessagesNumber();
+
+    long getSentMessagesNumber();
+
+    long getReceivedBytesNumber();
+
+    long getSentBytesNumber();
+
+    double getFanOutMicrosP50();
+
+    double getFanOutMicrosP99();
+
+    double getFanOutMicrosMax();
+
+    long getQueuedFramesNumber();
+
+    long getMaxUserQueuedFramesNumber();
+
+    long getWriteBatchesNumber();
+
+    double getAverageFramesPerWriteBatch();
+
+    double getAverageBytesPerWriteBatch();
+
+    Map<String, Long> getSentMessagesNumberByUser();
+
+    /**
+     * Messages per second sent by every online user since the previous sample. A sample is taken on read
+     * at most once per second, so several JMX consumers polling at once see the same rates.
+     */
+    Map<String, Double> getSentMessagesRateByUser();
+
+    long getDroppedRelayEventsNumber();
+}
@@ -1,45 +1,119 @@
 package server;
 
+import connection.ChatUserRecord;
+import connection.Message;
 import connection.Password;
-import connection.UserConnection;
 import connection.UserMetaInfo;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public class ServerModel {
-    private final Map<String, UserConnection> onlineUsersConnections = new HashMap<>();
-    private final Map<String, UserMetaInfo> onlineUsersMetaInfos = new HashMap<>();
+    private final ConcurrentMap<String, ChatUserRecord> onlineUsers = new ConcurrentHashMap<>();
 
     private final Password currentSessionPassword = new Password();
 
-    public synchronized Map<String, UserConnection> getOnlineUsersConnections() {
-        return onlineUsersConnections;
+    private final ConcurrentMap<String, ChatRoom> rooms = new ConcurrentHashMap<>();
+
+    public Collection<ChatUserRecord> getOnlineUsers() {
+        return onlineUsers.values();
+    }
+
+    public Set<String> getOnlineUsernames() {
+        return onlineUsers.keySet();
+    }
+
+    public int getOnlineUsersNumber() {
+        return onlineUsers.size();
+    }
+
+    public ChatUserRecord getOnlineUserByUsername(String username) {
+        return onlineUsers.get(username);
+    }
+
+    public boolean addNewOnlineUserIfAbsent(ChatUserRecord userRecord) {
+        return onlineUsers.putIfAbsent(userRecord.username(), userRecord) == null;
+    }
+
+    public boolean removeOnlineUser(ChatUserRecord userRecord) {
+        return onlineUsers.remove(userRecord.username(), userRecord);
+    }
+
+    public void removeAllOnlineUsers() {
+        onlineUsers.clear();
+        rooms.clear();
+    }
+
+    public ChatRoom getRoom(String roomName) {
+        return rooms.get(roomName);
     }
 
-    public Map<String, UserMetaInfo> getOnlineUsersMetaInfos() {
-        return onlineUsersMetaInfos;
+    public Set<String> getRoomNames() {
+        return rooms.keySet();
     }
 
-    public synchronized void addNewUserConnection(String username, UserConnection userConnection) {
-        onlineUsersConnections.put(username, userConnection);
+    public enum JoinRoomResult {
+        JOINED,
+        ALREADY_MEMBER,
+        ROOMS_LIMIT_REACHED
     }
 
-    public synchronized void removeUserConnectionByUsername(String username) {
-        onlineUsersConnections.remove(username);
+    public boolean joinRoom(String roomName, ChatUserRecord userRecord) {
+        return joinRoom(roomName, userRecord, Integer.MAX_VALUE) == JoinRoomResult.JOINED;
     }
 
-    public synchronized void addNewUserMetaInfo(String username, UserMetaInfo metaInfo) {
-        onlineUsersMetaInfos.put(username, metaInfo);
+    /**
+     * Joins the room and creates it when it doesn't exist yet, unless the server already has {@code maxRoomsNumber}
+     * rooms. The limit is checked per room name, so concurrent creations of different rooms may exceed it slightly.
+     */
+    public JoinRoomResult joinRoom(String roomName, ChatUserRecord userRecord, int maxRoomsNumber) {
+        JoinRoomResult[] joinRoomResult = {JoinRoomResult.ROOMS_LIMIT_REACHED};
+        rooms.compute(roomName, (name, room) -> {
+            if (room == null && rooms.size() >= maxRoomsNumber) {
+                return null;
+            }
+            ChatRoom joinedRoom = room == null ? new ChatRoom(name) : room;
+            joinRoomResult[0] = joinedRoom.addMember(userRecord) ? JoinRoomResult.JOINED : JoinRoomResult.ALREADY_MEMBER;
+            return joinedRoom;
+        });
+        return joinRoomResult[0];
     }
 
-    public synchronized void removeUserMetaInfoByUsername(String username) {
-        onlineUsersMetaInfos.remove(username);
+    public boolean leaveRoom(String roomName, ChatUserRecord userRecord) {
+        boolean[] isLeft = {false};
+        rooms.computeIfPresent(roomName, (name, room) -> {
+            isLeft[0] = room.removeMember(userRecord);
+            return room.isEmpty() && !Message.DEFAULT_ROOM_NAME.equals(name) ? null : room;
+        });
+        return isLeft[0];
+    }
+
+    /**
+     * Continues the room's message numbering after the given number, so clients never see numbers repeat
+     * after a restart. Rooms other than the default one still start from 1 once they are emptied and recreated.
+     */
+    public void restoreLastMessageSequenceNumber(String roomName, long sequenceNumber) {
+        rooms.computeIfAbsent(roomName, ChatRoom::new).restoreLastMessageSequenceNumber(sequenceNumber);
+    }
+
+    public List<String> leaveAllRooms(ChatUserRecord userRecord) {
+        List<String> leftRoomNames = new ArrayList<>();
+        for (String roomName : rooms.keySet()) {
+            if (leaveRoom(roomName, userRecord)) {
+                leftRoomNames.add(roomName);
+            }
+        }
+        return leftRoomNames;
     }
 
-    public synchronized UserMetaInfo getUserMetaInfoByUsername(String username) {
-        return onlineUsersMetaInfos.get(username);
+    public UserMetaInfo getUserMetaInfoByUsername(String username) {
+        ChatUserRecord userRecord = onlineUsers.get(username);
+        return userRecord == null ? null : userRecord.metaInfo();
     }
 
     public String getCurrentSessionPassword() {
@@ -55,4 +129,4 @@ public class ServerModel {
             currentSessionPassword.setValue(UUID.randomUUID().toString());
         }
     }
-}
\ No newline at end of file
+}
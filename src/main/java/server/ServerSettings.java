@@ -0,0 +1,133 @@
+package server;
+
+import connection.FrameCompression;
+import lombok.Builder;
+import lombok.Getter;
+
+@Getter
+@Builder
+public class ServerSettings {
+    @Builder.Default
+    private final int port = 8189;
+
+    @Builder.Default
+    private final long passwordExpirationMillis = 120000;
+
+    @Builder.Default
+    private final ServerEngineType engineType = ServerEngineType.BLOCKING;
+
+    @Builder.Default
+    private final int eventLoopsNumber = Runtime.getRuntime().availableProcessors();
+
+    @Builder.Default
+    private final int outboundQueueHighWaterMark = 1024;
+
+    @Builder.Default
+    private final OverflowPolicy overflowPolicy = OverflowPolicy.DISCONNECT;
+
+    @Builder.Default
+    private final int logMaxLines = 5000;
+
+    @Builder.Default
+    private final int logRefreshFramesPerSecond = 30;
+
+    @Builder.Default
+    private final int writeBatchMaxBytes = 0;
+
+    @Builder.Default
+    private final long writeBatchWindowMicros = 0;
+
+    @Builder.Default
+    private final int compressionThresholdBytes = FrameCompression.DEFAULT_THRESHOLD_BYTES;
+
+    private final String historyDirectory;
+
+    @Builder.Default
+    private final int historySegmentBytes = 64 * 1024 * 1024;
+
+    @Builder.Default
+    private final int historyMaxSegmentsNumber = 16;
+
+    @Builder.Default
+    private final long historyFsyncIntervalMillis = 1000;
+
+    @Builder.Default
+    private final int historyReplayMessagesNumber = 50;
+
+    @Builder.Default
+    private final long presenceTickMillis = 50;
+
+    @Builder.Default
+    private final long metricsDumpIntervalSeconds = 60;
+
+    @Builder.Default
+    private final long heartbeatIntervalSeconds = 30;
+
+    @Builder.Default
+    private final long readIdleTimeoutSeconds = 90;
+
+    @Builder.Default
+    private final long shutdownDrainMillis = 5000;
+
+    private final double userMessagesPerSecond;
+
+    @Builder.Default
+    private final int userMessagesBurst = 20;
+
+    private final double globalMessagesPerSecond;
+
+    @Builder.Default
+    private final int globalMessagesBurst = 1000;
+
+    @Builder.Default
+    private final int maxRoomsNumber = 10000;
+
+    @Builder.Default
+    private final int maxRoomsPerUser = 100;
+
+    private final String nodeId;
+
+    private final int relayPort;
+
+    private final String relayPeers;
+
+    public boolean isWriteCoalescingEnabled() {
+        return writeBatchMaxBytes > 0;
+    }
+
+    public boolean isCompressionEnabled() {
+        return compressionThresholdBytes > 0;
+    }
+
+    public boolean isHistoryEnabled() {
+        return historyDirectory != null;
+    }
+
+    public boolean isMetricsDumpEnabled() {
+        return metricsDumpIntervalSeconds > 0;
+    }
+
+    public boolean isHeartbeatEnabled() {
+        return heartbeatIntervalSeconds > 0;
+    }
+
+    public boolean isReadIdleTimeoutEnabled() {
+        return readIdleTimeoutSeconds > 0;
+    }
+
+    public boolean isUserRateLimitEnabled() {
+        return userMessagesPerSecond > 0;
+    }
+
+    public boolean isGlobalRateLimitEnabled() {
+        return globalMessagesPerSecond > 0;
+    }
+
+    public boolean isFederationEnabled() {
+        return relayPort > 0;
+    }
+
+    public String getFederationNodeId() {
+        return nodeId == null ? "node-" + relayPort : nodeId;
+    }
+}
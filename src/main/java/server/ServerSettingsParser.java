@@ -0,0 +1,194 @@
+package server;
+
+import org.apache.commons.cli.*;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Properties;
+
+public class ServerSettingsParser {
+    private static final String CONFIG_OPTION = "config";
+    private static final String PORT_OPTION = "port";
+    private static final String PASSWORD_ROTATION_OPTION = "password-rotation";
+    private static final String ENGINE_OPTION = "engine";
+    private static final String EVENT_LOOPS_OPTION = "event-loops";
+    private static final String OUTBOUND_QUEUE_OPTION = "outbound-queue";
+    private static final String OVERFLOW_POLICY_OPTION = "overflow-policy";
+    private static final String LOG_MAX_LINES_OPTION = "log-max-lines";
+    private static final String LOG_REFRESH_RATE_OPTION = "log-refresh-rate";
+    private static final String WRITE_BATCH_BYTES_OPTION = "write-batch-bytes";
+    private static final String WRITE_BATCH_WINDOW_OPTION = "write-batch-window-us";
+    private static final String COMPRESSION_THRESHOLD_OPTION = "compression-threshold";
+    private static final String HISTORY_DIRECTORY_OPTION = "history-dir";
+    private static final String HISTORY_SEGMENT_SIZE_OPTION = "history-segment-mb";
+    private static final String HISTORY_SEGMENTS_OPTION = "history-segments";
+    private static final String HISTORY_FSYNC_INTERVAL_OPTION = "history-fsync-ms";
+    private static final String HISTORY_REPLAY_OPTION = "history-replay";
+    private static final String PRESENCE_TICK_OPTION = "presence-tick-ms";
+    private static final String METRICS_DUMP_INTERVAL_OPTION = "metrics-dump-s";
+    private static final String HEARTBEAT_INTERVAL_OPTION = "heartbeat-s";
+    private static final String READ_IDLE_TIMEOUT_OPTION = "idle-timeout-s";
+    private static final String SHUTDOWN_DRAIN_OPTION = "shutdown-drain-ms";
+    private static final String USER_RATE_OPTION = "user-rate";
+    private static final String USER_BURST_OPTION = "user-burst";
+    private static final String GLOBAL_RATE_OPTION = "global-rate";
+    private static final String GLOBAL_BURST_OPTION = "global-burst";
+    private static final String MAX_ROOMS_OPTION = "max-rooms";
+    private static final String MAX_ROOMS_PER_USER_OPTION = "max-rooms-per-user";
+    private static final String NODE_ID_OPTION = "node-id";
+    private static final String RELAY_PORT_OPTION = "relay-port";
+    private static final String RELAY_PEERS_OPTION = "relay-peers";
+
+    private final Options options = new Options();
+
+    public ServerSettingsParser() {
+        options.addOption("c", CONFIG_OPTION, true, "properties file with server settings, keyed by long option names");
+        options.addOption("p", PORT_OPTION, true, "server port");
+        options.addOption("r", PASSWORD_ROTATION_OPTION, true, "session password rotation interval in seconds");
+        options.addOption("e", ENGINE_OPTION, true, "server engine: blocking, virtual-threads or nio");
+        options.addOption("l", EVENT_LOOPS_OPTION, true, "number of event-loop threads for the nio engine");
+        options.addOption("q", OUTBOUND_QUEUE_OPTION, true, "maximum number of messages queued for one user");
+        options.addOption("o", OVERFLOW_POLICY_OPTION, true, "slow consumer policy: drop-oldest or disconnect");
+        options.addOption(null, LOG_MAX_LINES_OPTION, true, "maximum number of lines kept in the server log view");
+        options.addOption(null, LOG_REFRESH_RATE_OPTION, true, "server log view refreshes per second");
+        options.addOption(null, WRITE_BATCH_BYTES_OPTION, true, "byte budget of one coalesced write, coalescing is disabled when absent");
+        options.addOption(null, WRITE_BATCH_WINDOW_OPTION, true, "how long a coalesced write may wait for more messages, in microseconds");
+        options.addOption(null, COMPRESSION_THRESHOLD_OPTION, true, "smallest binary frame compressed for users that negotiated deflate, 0 disables compression");
+        options.addOption(null, HISTORY_DIRECTORY_OPTION, true, "directory of the persistent chat history, disabled when absent");
+        options.addOption(null, HISTORY_SEGMENT_SIZE_OPTION, true, "size of one history segment file in megabytes");
+        options.addOption(null, HISTORY_SEGMENTS_OPTION, true, "number of history segment files kept on disk");
+        options.addOption(null, HISTORY_FSYNC_INTERVAL_OPTION, true, "interval between history fsyncs in milliseconds");
+        options.addOption(null, HISTORY_REPLAY_OPTION, true, "number of history messages sent to a user after login");
+        options.addOption(null, PRESENCE_TICK_OPTION, true, "interval between batched presence updates in milliseconds");
+        options.addOption(null, METRICS_DUMP_INTERVAL_OPTION, true, "interval between metrics snapshots in the server log in seconds, 0 disables them");
+        options.addOption(null, HEARTBEAT_INTERVAL_OPTION, true, "seconds of silence after which a user is pinged, 0 disables pings");
+        options.addOption(null, READ_IDLE_TIMEOUT_OPTION, true, "seconds of silence after which a connection is closed, 0 disables the timeout");
+        options.addOption(null, SHUTDOWN_DRAIN_OPTION, true, "milliseconds given to connections to flush queued messages on stop");
+        options.addOption(null, USER_RATE_OPTION, true, "messages per second accepted from one user, unlimited when absent");
+        options.addOption(null, USER_BURST_OPTION, true, "messages one user may send at once before the rate limit applies");
+        options.addOption(null, GLOBAL_RATE_OPTION, true, "messages per second accepted from all users together, unlimited when absent");
+        options.addOption(null, GLOBAL_BURST_OPTION, true, "messages all users may send at once before the global rate limit applies");
+        options.addOption(null, MAX_ROOMS_OPTION, true, "maximum number of rooms on the server, creating more is rejected");
+        options.addOption(null, MAX_ROOMS_PER_USER_OPTION, true, "maximum number of rooms one user may be in, the default room included");
+        options.addOption(null, NODE_ID_OPTION, true, "unique id of this node in a federation, node-<relay port> when absent");
+        options.addOption(null, RELAY_PORT_OPTION, true, "loopback port of the relay bus between server nodes, federation is disabled when absent");
+        options.addOption(null, RELAY_PEERS_OPTION, true, "comma-separated relay ports or host:port addresses of the other nodes");
+    }
+
+    public ServerSettings parse(String[] args) throws ParseException, IOException {
+        CommandLine commandLine = new DefaultParser().parse(options, args);
+        Properties settings = loadConfigProperties(commandLine);
+        for (Option option : commandLine.getOptions()) {
+            settings.setProperty(option.getLongOpt(), option.getValue());
+        }
+
+        ServerSettings.ServerSettingsBuilder settingsBuilder = ServerSettings.builder();
+        if (settings.containsKey(PORT_OPTION)) {
+            settingsBuilder.port(Integer.parseInt(settings.getProperty(PORT_OPTION).trim()));
+        }
+        if (settings.containsKey(PASSWORD_ROTATION_OPTION)) {
+            settingsBuilder.passwordExpirationMillis(Long.parseLong(settings.getProperty(PASSWORD_ROTATION_OPTION).trim()) * 1000);
+        }
+        if (settings.containsKey(ENGINE_OPTION)) {
+            settingsBuilder.engineType(ServerEngineType.fromName(settings.getProperty(ENGINE_OPTION)));
+        }
+        if (settings.containsKey(EVENT_LOOPS_OPTION)) {
+            settingsBuilder.eventLoopsNumber(Integer.parseInt(settings.getProperty(EVENT_LOOPS_OPTION).trim()));
+        }
+        if (settings.containsKey(OUTBOUND_QUEUE_OPTION)) {
+            settingsBuilder.outboundQueueHighWaterMark(Integer.parseInt(settings.getProperty(OUTBOUND_QUEUE_OPTION).trim()));
+        }
+        if (settings.containsKey(OVERFLOW_POLICY_OPTION)) {
+            settingsBuilder.overflowPolicy(OverflowPolicy.fromName(settings.getProperty(OVERFLOW_POLICY_OPTION)));
+        }
+        if (settings.containsKey(LOG_MAX_LINES_OPTION)) {
+            settingsBuilder.logMaxLines(Integer.parseInt(settings.getProperty(LOG_MAX_LINES_OPTION).trim()));
+        }
+        if (settings.containsKey(LOG_REFRESH_RATE_OPTION)) {
+            settingsBuilder.logRefreshFramesPerSecond(Integer.parseInt(settings.getProperty(LOG_REFRESH_RATE_OPTION).trim()));
+        }
+        if (settings.containsKey(WRITE_BATCH_BYTES_OPTION)) {
+            settingsBuilder.writeBatchMaxBytes(Integer.parseInt(settings.getProperty(WRITE_BATCH_BYTES_OPTION).trim()));
+        }
+        if (settings.containsKey(WRITE_BATCH_WINDOW_OPTION)) {
+            settingsBuilder.writeBatchWindowMicros(Long.parseLong(settings.getProperty(WRITE_BATCH_WINDOW_OPTION).trim()));
+        }
+        if (settings.containsKey(COMPRESSION_THRESHOLD_OPTION)) {
+            settingsBuilder.compressionThresholdBytes(Integer.parseInt(settings.getProperty(COMPRESSION_THRESHOLD_OPTION).trim()));
+        }
+        if (settings.containsKey(HISTORY_DIRECTORY_OPTION)) {
+            settingsBuilder.historyDirectory(settings.getProperty(HISTORY_DIRECTORY_OPTION).trim());
+        }
+        if (settings.containsKey(HISTORY_SEGMENT_SIZE_OPTION)) {
+            settingsBuilder.historySegmentBytes(Integer.parseInt(settings.getProperty(HISTORY_SEGMENT_SIZE_OPTION).trim()) * 1024 * 1024);
+        }
+        if (settings.containsKey(HISTORY_SEGMENTS_OPTION)) {
+            settingsBuilder.historyMaxSegmentsNumber(Integer.parseInt(settings.getProperty(HISTORY_SEGMENTS_OPTION).trim()));
+        }
+        if (settings.containsKey(HISTORY_FSYNC_INTERVAL_OPTION)) {
+            settingsBuilder.historyFsyncIntervalMillis(Long.parseLong(settings.getProperty(HISTORY_FSYNC_INTERVAL_OPTION).trim()));
+        }
+        if (settings.containsKey(HISTORY_REPLAY_OPTION)) {
+            settingsBuilder.historyReplayMessagesNumber(Integer.parseInt(settings.getProperty(HISTORY_REPLAY_OPTION).trim()));
+        }
+        if (settings.containsKey(PRESENCE_TICK_OPTION)) {
+            settingsBuilder.presenceTickMillis(Long.parseLong(settings.getProperty(PRESENCE_TICK_OPTION).trim()));
+        }
+        if (settings.containsKey(METRICS_DUMP_INTERVAL_OPTION)) {
+            settingsBuilder.metricsDumpIntervalSeconds(Long.parseLong(settings.getProperty(METRICS_DUMP_INTERVAL_OPTION).trim()));
+        }
+        if (settings.containsKey(HEARTBEAT_INTERVAL_OPTION)) {
+            settingsBuilder.heartbeatIntervalSeconds(Long.parseLong(settings.getProperty(HEARTBEAT_INTERVAL_OPTION).trim()));
+        }
+        if (settings.containsKey(READ_IDLE_TIMEOUT_OPTION)) {
+            settingsBuilder.readIdleTimeoutSeconds(Long.parseLong(settings.getProperty(READ_IDLE_TIMEOUT_OPTION).trim()));
+        }
+        if (settings.containsKey(SHUTDOWN_DRAIN_OPTION)) {
+            settingsBuilder.shutdownDrainMillis(Long.parseLong(settings.getProperty(SHUTDOWN_DRAIN_OPTION).trim()));
+        }
+        if (settings.containsKey(USER_RATE_OPTION)) {
+            settingsBuilder.userMessagesPerSecond(Double.parseDouble(settings.getProperty(USER_RATE_OPTION).trim()));
+        }
+        if (settings.containsKey(USER_BURST_OPTION)) {
+            settingsBuilder.userMessagesBurst(Integer.parseInt(settings.getProperty(USER_BURST_OPTION).trim()));
+        }
+        if (settings.containsKey(GLOBAL_RATE_OPTION)) {
+            settingsBuilder.globalMessagesPerSecond(Double.parseDouble(settings.getProperty(GLOBAL_RATE_OPTION).trim()));
+        }
+        if (settings.containsKey(GLOBAL_BURST_OPTION)) {
+            settingsBuilder.globalMessagesBurst(Integer.parseInt(settings.getProperty(GLOBAL_BURST_OPTION).trim()));
+        }
+        if (settings.containsKey(MAX_ROOMS_OPTION)) {
+            settingsBuilder.maxRoomsNumber(Integer.parseInt(settings.getProperty(MAX_ROOMS_OPTION).trim()));
+        }
+        if (settings.containsKey(MAX_ROOMS_PER_USER_OPTION)) {
+            settingsBuilder.maxRoomsPerUser(Integer.parseInt(settings.getProperty(MAX_ROOMS_PER_USER_OPTION).trim()));
+        }
+        if (settings.containsKey(NODE_ID_OPTION)) {
+            settingsBuilder.nodeId(settings.getProperty(NODE_ID_OPTION).trim());
+        }
+        if (settings.containsKey(RELAY_PORT_OPTION)) {
+            settingsBuilder.relayPort(Integer.parseInt(settings.getProperty(RELAY_PORT_OPTION).trim()));
+        }
+        if (settings.containsKey(RELAY_PEERS_OPTION)) {
+            settingsBuilder.relayPeers(settings.getProperty(RELAY_PEERS_OPTION).trim());
+        }
+        return settingsBuilder.build();
+    }
+
+    private Properties loadConfigProperties(CommandLine commandLine) throws IOException {
+        Properties properties = new Properties();
+        if (commandLine.hasOption(CONFIG_OPTION)) {
+            try (Reader reader = new FileReader(commandLine.getOptionValue(CONFIG_OPTION))) {
+                properties.load(reader);
+            }
+        }
+        properties.remove(CONFIG_OPTION);
+        return properties;
+    }
+
+    public void printHelp(String launcherName) {
+        new HelpFormatter().printHelp(launcherName, options);
+    }
+}
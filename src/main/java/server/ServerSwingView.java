@@ -3,6 +3,8 @@ package server;
 import connection.Message;
 import connection.MessageType;
 import connection.ServerObserver;
+import connection.UserMetaInfo;
+import utilities.FormatMessagesBuilder;
 
 import javax.swing.*;
 import javax.swing.event.MenuEvent;
@@ -11,14 +13,31 @@ import java.awt.*;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.net.ConnectException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 
-public class ServerSwingView implements ServerObserver {
+public class ServerSwingView implements ServerView, ServerObserver {
     private final JFrame serverMainFrame = new JFrame("Multi-user chat server");
 
-    private final JTextArea serverLogsTextArea = new JTextArea(20, 80) {{
-        append("Server logging messages:\n");
-    }};
+    private static final String SERVER_LOGS_HEADER = "Server logging messages:\n";
+
+    private final JTextArea serverLogsTextArea = new JTextArea(SERVER_LOGS_HEADER, 20, 80);
+
+    private final BoundedLogModel serverLogsModel;
+
+    private final Queue<String> pendingServiceMessages = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger pendingServiceMessagesNumber = new AtomicInteger();
+
+    private final AtomicLong droppedServiceMessagesNumber = new AtomicLong();
+
+    private final Timer serverLogsRefreshTimer;
 
     private final JButton serverStartButton = new JButton("Launch server");
 
@@ -40,8 +59,12 @@ public class ServerSwingView implements ServerObserver {
 
     private final ServerController serverController;
 
-    public ServerSwingView(ServerController serverController) {
+    public ServerSwingView(ServerController serverController, ServerSettings serverSettings) {
         this.serverController = serverController;
+        this.serverLogsModel = new BoundedLogModel(serverSettings.getLogMaxLines());
+        this.serverLogsModel.append(SERVER_LOGS_HEADER);
+        this.serverLogsRefreshTimer = new Timer(1000 / Math.max(1, serverSettings.getLogRefreshFramesPerSecond()),
+                e -> flushPendingServiceMessages());
         initServerGraphicInterface();
         showInitScreen();
     }
@@ -80,9 +103,13 @@ public class ServerSwingView implements ServerObserver {
         connectedUsernamesList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
         connectedUsernamesList.addListSelectionListener(e -> {
             String selectedUsername = connectedUsernamesList.getSelectedValue();
+            UserMetaInfo selectedUserMetaInfo = serverController.getServerModel().getUserMetaInfoByUsername(selectedUsername);
+            if (selectedUserMetaInfo == null) {
+                return;
+            }
             JOptionPane.showMessageDialog(
                     serverMainFrame,
-                    serverController.getServerModel().getUserMetaInfoByUsername(selectedUsername).toString(),
+                    selectedUserMetaInfo.toString(),
                     "Meta-Info about user",
                     JOptionPane.INFORMATION_MESSAGE);
         });
@@ -177,7 +204,7 @@ public class ServerSwingView implements ServerObserver {
     }
 
     private void addButtonClickListenerToStopServer() {
-        serverStopButton.addActionListener(e -> serverController.stopServer());
+        serverStopButton.addActionListener(e -> new Thread(serverController::stopServer, "ServerStopper").start());
     }
 
     private void addButtonClickListenerToGenerateSessionPassword() {
@@ -200,11 +227,51 @@ public class ServerSwingView implements ServerObserver {
 
     private void showInitScreen() {
         serverMainFrame.setVisible(true);
+        serverLogsRefreshTimer.start();
+    }
+
+    @Override
+    public void addServiceMessage(String serviceMessage) {
+        addServiceMessageToServerLogsTextArea(FormatMessagesBuilder.buildMessageWithDateNow(serviceMessage));
     }
 
     public void addServiceMessageToServerLogsTextArea(String serviceMessage) {
-        synchronized (serverLogsTextArea) {
-            serverLogsTextArea.append(serviceMessage);
+        if (pendingServiceMessagesNumber.incrementAndGet() > serverLogsModel.getCapacity()) {
+            pendingServiceMessagesNumber.decrementAndGet();
+            droppedServiceMessagesNumber.incrementAndGet();
+            return;
+        }
+        pendingServiceMessages.add(serviceMessage);
+    }
+
+    private void flushPendingServiceMessages() {
+        long droppedMessagesNumber = droppedServiceMessagesNumber.getAndSet(0);
+        if (pendingServiceMessages.isEmpty() && droppedMessagesNumber == 0) {
+            return;
+        }
+        StringBuilder appendedText = new StringBuilder();
+        int shownTextLength = serverLogsModel.getTextLength();
+        int evictedLength = 0;
+        String serviceMessage;
+        while ((serviceMessage = pendingServiceMessages.poll()) != null) {
+            pendingServiceMessagesNumber.decrementAndGet();
+            appendedText.append(serviceMessage);
+            evictedLength += serverLogsModel.append(serviceMessage);
+        }
+        if (droppedMessagesNumber > 0) {
+            serviceMessage = FormatMessagesBuilder.buildMessageWithDateNow(
+                    droppedMessagesNumber + " log messages were dropped because the log view could not keep up");
+            appendedText.append(serviceMessage);
+            evictedLength += serverLogsModel.append(serviceMessage);
+        }
+
+        if (evictedLength >= shownTextLength) {
+            serverLogsTextArea.setText(serverLogsModel.buildText());
+            return;
+        }
+        serverLogsTextArea.append(appendedText.toString());
+        if (evictedLength > 0) {
+            serverLogsTextArea.replaceRange(null, 0, evictedLength);
         }
     }
 
@@ -235,7 +302,23 @@ public class ServerSwingView implements ServerObserver {
         }
 
         if (MessageType.isTypeNotifyToRemove(message.getMessageType())) {
-            usernamesListModel.removeElement(message.getMessageText());
+            if (message.getConnectedUsernames() != null) {
+                removeUsernamesFromList(message.getConnectedUsernames());
+            } else {
+                usernamesListModel.removeElement(message.getMessageText());
+            }
+        }
+    }
+
+    private void removeUsernamesFromList(Set<String> removedUsernames) {
+        List<String> remainingUsernames = new ArrayList<>();
+        for (int i = 0; i < usernamesListModel.size(); i++) {
+            String username = usernamesListModel.get(i);
+            if (!removedUsernames.contains(username)) {
+                remainingUsernames.add(username);
+            }
         }
+        usernamesListModel.clear();
+        usernamesListModel.addAll(remainingUsernames);
     }
 }
\ No newline at end of file
@@ -0,0 +1,5 @@
+package server;
+
+public interface ServerView {
+    void addServiceMessage(String serviceMessage);
+}
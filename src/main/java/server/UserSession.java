@@ -0,0 +1,490 @@
+package server;
+
+import connection.*;
+import utilities.HashedWheelTimer;
+import utilities.TokenBucket;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+public class UserSession {
+    private enum State {
+        AWAITING_USERNAME,
+        AWAITING_PASSWORD,
+        ONLINE,
+        FINISHED
+    }
+
+    private final ServerController serverController;
+    private final ServerModel serverModel;
+    private final MessageConnection userConnection;
+    private final ServerSettings serverSettings;
+
+    private static final int MAX_ROOM_NAME_LENGTH = 64;
+    private static final long THROTTLE_NOTICE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long DISCONNECT_DRAIN_TIMEOUT_MILLIS = 1000;
+
+    private volatile State state = State.AWAITING_USERNAME;
+    private Message responseForUsername;
+    private ChatUserRecord userRecord;
+    private boolean isDeltaPresenceNegotiated;
+    private long handshakeStartNanos;
+    private HandshakeEvent handshakeEvent;
+    private final TokenBucket messageRateLimiter;
+    private long lastThrottleNoticeNanos;
+    private volatile long lastReadNanos;
+    private HashedWheelTimer.Timeout heartbeatTimeout;
+    private final Set<String> joinedRoomNames = new HashSet<>();
+
+    public UserSession(ServerController serverController, MessageConnection userConnection) {
+        this.serverController = serverController;
+        this.serverModel = serverController.getServerModel();
+        this.userConnection = userConnection;
+        this.serverSettings = serverController.getServerSettings();
+        this.messageRateLimiter = serverSettings.isUserRateLimitEnabled()
+                ? new TokenBucket(serverSettings.getUserMessagesPerSecond(), serverSettings.getUserMessagesBurst())
+                : null;
+    }
+
+    public void start() {
+        lastReadNanos = System.nanoTime();
+        scheduleHeartbeatCheck(getHeartbeatCheckDelayNanos());
+        beginHandshake();
+        requestUsernameFromNewUser();
+    }
+
+    public boolean isFinished() {
+        return state == State.FINISHED;
+    }
+
+    /**
+     * Takes a permit of the user and global rate limits for a user-generated message of an online user. The engine
+     * must not handle the message and must stop reading from the user for the returned delay when it isn't 0.
+     * Other messages, such as PONG, always pass, so a throttled user is never evicted as idle.
+     *
+     * @return 0 when the message may be handled now, otherwise the nanoseconds to wait before asking again
+     */
+    public long acquireMessagePermit(Message message) {
+        lastReadNanos = System.nanoTime();
+        if (state != State.ONLINE || !MessageType.isTypeRateLimited(message.getMessageType())) {
+            return 0;
+        }
+        long throttleNanos = messageRateLimiter == null ? 0 : messageRateLimiter.tryAcquire();
+        if (throttleNanos == 0) {
+            TokenBucket globalMessageRateLimiter = serverController.getGlobalMessageRateLimiter();
+            throttleNanos = globalMessageRateLimiter == null ? 0 : globalMessageRateLimiter.tryAcquire();
+            if (throttleNanos > 0 && messageRateLimiter != null) {
+                messageRateLimiter.refund();
+            }
+        }
+        if (throttleNanos > 0) {
+            sendThrottleNotice();
+        }
+        return throttleNanos;
+    }
+
+    private void sendThrottleNotice() {
+        long nowNanos = System.nanoTime();
+        if (lastThrottleNoticeNanos != 0 && nowNanos - lastThrottleNoticeNanos < THROTTLE_NOTICE_INTERVAL_NANOS) {
+            return;
+        }
+        lastThrottleNoticeNanos = nowNanos;
+        serverController.getServerMetrics().recordThrottleNotice();
+        userConnection.send(new Message(MessageType.THROTTLE, "You are sending messages too fast, the server slowed you down"));
+    }
+
+    public void handleMessage(Message message) throws IOException {
+        lastReadNanos = System.nanoTime();
+        switch (state) {
+            case AWAITING_USERNAME -> {
+                negotiateMessageCodec(message);
+                isDeltaPresenceNegotiated = Message.DELTA_PRESENCE_MODE.equals(message.getHandshakeOption(Message.PRESENCE_MODE_OPTION));
+                if (MessageType.isTypeLoginRequest(message.getMessageType())) {
+                    connectNewUser(getUsernameFromResponseMessage(message), message.getHandshakeOption(Message.PASSWORD_OPTION));
+                } else {
+                    responseForUsername = message;
+                    requestCurrentSessionPasswordFromNewUser();
+                }
+            }
+            case AWAITING_PASSWORD -> connectNewUser(
+                    MessageType.isTypeNewUsername(responseForUsername.getMessageType()) ? getUsernameFromResponseMessage(responseForUsername) : null,
+                    MessageType.isTypeNewPassword(message.getMessageType()) ? message.getMessageText() : null);
+            case ONLINE -> handleMessageFromOnlineUser(message);
+            case FINISHED -> {
+            }
+        }
+    }
+
+    public void handleConnectionLost() {
+        cancelHeartbeatCheck();
+        if (state == State.ONLINE) {
+            if (serverController.hasServerStarted() && !userRecord.metaInfo().isDisconnectedByServer()) {
+                serverController.addServiceMessageToServerLogs(
+                        "An error occurred when sending a message from user " + userRecord.username() + " with address " + userConnection.getRemoteSocketAddress());
+            }
+            removeUserFromServerModel();
+        } else if (state != State.FINISHED) {
+            serverController.addServiceMessageToServerLogs("An error occurred when connecting a new user");
+        }
+        state = State.FINISHED;
+    }
+
+    private long getHeartbeatCheckDelayNanos() {
+        long heartbeatIntervalNanos = TimeUnit.SECONDS.toNanos(serverSettings.getHeartbeatIntervalSeconds());
+        long readIdleTimeoutNanos = TimeUnit.SECONDS.toNanos(serverSettings.getReadIdleTimeoutSeconds());
+        if (!serverSettings.isHeartbeatEnabled()) {
+            return readIdleTimeoutNanos;
+        }
+        return serverSettings.isReadIdleTimeoutEnabled() ? Math.min(heartbeatIntervalNanos, readIdleTimeoutNanos) : heartbeatIntervalNanos;
+    }
+
+    private void scheduleHeartbeatCheck(long delayNanos) {
+        HashedWheelTimer timer = serverController.getTimer();
+        if (timer != null && delayNanos > 0) {
+            heartbeatTimeout = timer.newTimeout(this::checkHeartbeat, delayNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void cancelHeartbeatCheck() {
+        HashedWheelTimer.Timeout currentHeartbeatTimeout = heartbeatTimeout;
+        if (currentHeartbeatTimeout != null) {
+            currentHeartbeatTimeout.cancel();
+        }
+    }
+
+    private void checkHeartbeat() {
+        if (state == State.FINISHED) {
+            return;
+        }
+        long silenceNanos = System.nanoTime() - lastReadNanos;
+        long readIdleTimeoutNanos = TimeUnit.SECONDS.toNanos(serverSettings.getReadIdleTimeoutSeconds());
+        if (serverSettings.isReadIdleTimeoutEnabled() && silenceNanos >= readIdleTimeoutNanos) {
+            disconnectIdleConnection();
+            return;
+        }
+        long heartbeatIntervalNanos = TimeUnit.SECONDS.toNanos(serverSettings.getHeartbeatIntervalSeconds());
+        if (state == State.ONLINE && serverSettings.isHeartbeatEnabled() && silenceNanos >= heartbeatIntervalNanos) {
+            userConnection.send(new Message(MessageType.PING));
+        }
+        long nextCheckDelayNanos = getHeartbeatCheckDelayNanos();
+        if (serverSettings.isReadIdleTimeoutEnabled()) {
+            nextCheckDelayNanos = Math.min(nextCheckDelayNanos, Math.max(readIdleTimeoutNanos - silenceNanos, 1));
+        }
+        scheduleHeartbeatCheck(nextCheckDelayNanos);
+    }
+
+    private void disconnectIdleConnection() {
+        boolean isOnline = state == State.ONLINE;
+        state = State.FINISHED;
+        if (isOnline) {
+            serverController.disconnectIdleUser(userRecord);
+            return;
+        }
+        serverController.addServiceMessageToServerLogs("The connection with remote address " + userConnection.getRemoteSocketAddress()
+                + " was closed without a login after " + serverSettings.getReadIdleTimeoutSeconds() + " seconds of silence");
+        try {
+            userConnection.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private void requestUsernameFromNewUser() {
+        state = State.AWAITING_USERNAME;
+        Map<String, String> handshakeOptions = new HashMap<>();
+        handshakeOptions.put(MessageCodecType.SUPPORTED_CODECS_OPTION, MessageCodecType.buildSupportedCodecNames());
+        handshakeOptions.put(Message.PRESENCE_MODE_OPTION, Message.DELTA_PRESENCE_MODE);
+        if (serverSettings.isCompressionEnabled()) {
+            handshakeOptions.put(FrameCompression.SUPPORTED_COMPRESSIONS_OPTION, FrameCompression.DEFLATE_COMPRESSION_NAME);
+        }
+        userConnection.send(Message.builder()
+                .messageType(MessageType.REQUEST_USERNAME)
+                .handshakeOptions(handshakeOptions)
+                .build());
+    }
+
+    private void negotiateMessageCodec(Message responseForUsername) {
+        MessageCodecType selectedCodecType = MessageCodecType.fromCodecName(
+                responseForUsername.getHandshakeOption(MessageCodecType.SELECTED_CODEC_OPTION));
+        if (selectedCodecType != null && userConnection.getMessageCodecType() == MessageCodecType.JSON) {
+            userConnection.setMessageCodecType(selectedCodecType);
+            negotiateFrameCompression(responseForUsername);
+        }
+    }
+
+    private void negotiateFrameCompression(Message responseForUsername) {
+        String selectedCompressionName = responseForUsername.getHandshakeOption(FrameCompression.SELECTED_COMPRESSION_OPTION);
+        if (serverSettings.isCompressionEnabled()
+                && userConnection.getMessageCodecType() == MessageCodecType.BINARY
+                && FrameCompression.DEFLATE_COMPRESSION_NAME.equals(selectedCompressionName)) {
+            userConnection.setFrameCompression(new FrameCompression(serverSettings.getCompressionThresholdBytes()));
+        }
+    }
+
+    private void requestCurrentSessionPasswordFromNewUser() {
+        state = State.AWAITING_PASSWORD;
+        userConnection.send(new Message(MessageType.REQUEST_PASSWORD));
+    }
+
+    private void connectNewUser(String username, String password) {
+        if (isUsernameValid(username)
+                && password != null
+                && serverModel.isCurrentSessionPasswordCorrect(password)
+                && addNewUserToServerModel(username)) {
+            state = State.ONLINE;
+            serverController.getServerMetrics().recordHandshake(System.nanoTime() - handshakeStartNanos);
+            joinRoom(Message.DEFAULT_ROOM_NAME);
+            userConnection.send(serverController.getPresenceService().addOnlineUser(userRecord, isDeltaPresenceNegotiated));
+            serverController.sendMessageHistoryToUser(userConnection);
+            serverController.getPresenceService().announceOnlineUser(userRecord);
+            commitHandshake(username, true);
+        } else {
+            serverController.getServerMetrics().recordRejectedLogin();
+            userConnection.send(new Message(MessageType.LOGIN_ERROR));
+            commitHandshake(username, false);
+            beginHandshake();
+            requestUsernameFromNewUser();
+        }
+    }
+
+    private void beginHandshake() {
+        handshakeStartNanos = System.nanoTime();
+        handshakeEvent = new HandshakeEvent();
+        handshakeEvent.begin();
+    }
+
+    private void commitHandshake(String username, boolean isAccepted) {
+        handshakeEvent.end();
+        if (handshakeEvent.shouldCommit()) {
+            handshakeEvent.remoteAddress = String.valueOf(userConnection.getRemoteSocketAddress());
+            handshakeEvent.username = username;
+            handshakeEvent.codecType = userConnection.getMessageCodecType().name();
+            handshakeEvent.isAccepted = isAccepted;
+            handshakeEvent.commit();
+        }
+    }
+
+    private String getUsernameFromResponseMessage(Message responseMessage) {
+        return responseMessage.getMessageText();
+    }
+
+    private boolean isUsernameValid(String username) {
+        return username != null && !username.isEmpty();
+    }
+
+    private boolean isRoomNameValid(String roomName) {
+        return roomName != null && !roomName.isBlank() && roomName.length() <= MAX_ROOM_NAME_LENGTH;
+    }
+
+    private boolean addNewUserToServerModel(String username) {
+        ChatUserRecord newUserRecord = new ChatUserRecord(userConnection, username,
+                UserMetaInfo.builder()
+                        .username(username)
+                        .firstConnectionTimeMillis(System.currentTimeMillis())
+                        .build());
+        if (!serverController.addNewOnlineUser(newUserRecord)) {
+            return false;
+        }
+        userRecord = newUserRecord;
+        serverController.notifyObservers(new Message(MessageType.NOTIFY_ADD, userRecord.username()));
+        return true;
+    }
+
+    private void handleMessageFromOnlineUser(Message messageFromUser) throws IOException {
+        if (MessageType.isTypeTextMessage(messageFromUser.getMessageType())) {
+            sendMessageFromUserToRoom(messageFromUser);
+        }
+
+        if (MessageType.isTypePrivateMessage(messageFromUser.getMessageType())) {
+            sendPrivateMessageFromUser(messageFromUser);
+        }
+
+        if (MessageType.isTypeJoinRoom(messageFromUser.getMessageType())) {
+            handleJoinRoomRequest(messageFromUser.getRoomName());
+        }
+
+        if (MessageType.isTypeLeaveRoom(messageFromUser.getMessageType())) {
+            handleLeaveRoomRequest(messageFromUser.getRoomName());
+        }
+
+        if (MessageType.isTypeListRooms(messageFromUser.getMessageType())) {
+            userConnection.send(Message.builder()
+                    .messageType(MessageType.LIST_ROOMS)
+                    .roomNames(new HashSet<>(serverModel.getRoomNames()))
+                    .build());
+        }
+
+        if (MessageType.isTypePresenceSnapshot(messageFromUser.getMessageType())) {
+            userConnection.send(serverController.getPresenceService().buildRosterSnapshot());
+        }
+
+        if (MessageType.isTypePing(messageFromUser.getMessageType())) {
+            userConnection.send(new Message(MessageType.PONG));
+        }
+
+        if (MessageType.isTypeDisconnect(messageFromUser.getMessageType())) {
+            disableExistedUserFromChat();
+        }
+    }
+
+    private void sendMessageFromUserToRoom(Message message) {
+        String roomName = message.getRoomName() == null ? Message.DEFAULT_ROOM_NAME : message.getRoomName();
+        ChatRoom room = serverModel.getRoom(roomName);
+        if (!joinedRoomNames.contains(roomName) || room == null) {
+            sendError("You are not a member of the room " + roomName);
+            return;
+        }
+        serverController.sendTextMessageToRoom(userRecord.username(), message.getMessageText(), room);
+        userRecord.metaInfo().updateLastMessageTime();
+    }
+
+    private void sendPrivateMessageFromUser(Message message) {
+        if (message.getRecipientUsername() == null || message.getRecipientUsername().isBlank()) {
+            sendError("The recipient of a private message is missing");
+            return;
+        }
+        ChatUserRecord recipientRecord = serverModel.getOnlineUserByUsername(message.getRecipientUsername());
+        Message privateMessage = Message.builder()
+                .messageType(MessageType.PRIVATE_MESSAGE)
+                .messageText(message.getMessageText())
+                .senderUsername(userRecord.username())
+                .recipientUsername(recipientRecord == null ? message.getRecipientUsername() : recipientRecord.username())
+                .timestampMillis(System.currentTimeMillis())
+                .build();
+        if (recipientRecord == null) {
+            if (!serverController.sendPrivateMessageToOtherNode(privateMessage)) {
+                sendError("The user " + message.getRecipientUsername() + " is offline");
+                return;
+            }
+            userConnection.send(privateMessage);
+            userRecord.metaInfo().updateLastMessageTime();
+            return;
+        }
+        EncodedFrame privateMessageFrame = EncodedFrame.encode(privateMessage);
+        recipientRecord.userConnection().send(privateMessageFrame);
+        if (recipientRecord != userRecord) {
+            userConnection.send(privateMessageFrame);
+        }
+        userRecord.metaInfo().updateLastMessageTime();
+    }
+
+    private void handleJoinRoomRequest(String roomName) {
+        if (!isRoomNameValid(roomName)) {
+            sendError("Invalid room name");
+            return;
+        }
+        if (!joinedRoomNames.contains(roomName) && joinedRoomNames.size() >= serverSettings.getMaxRoomsPerUser()) {
+            sendError("You can't be in more than " + serverSettings.getMaxRoomsPerUser() + " rooms");
+            return;
+        }
+        ServerModel.JoinRoomResult joinRoomResult = serverModel.joinRoom(roomName, userRecord, serverSettings.getMaxRoomsNumber());
+        if (joinRoomResult == ServerModel.JoinRoomResult.ROOMS_LIMIT_REACHED) {
+            sendError("The server can't hold more than " + serverSettings.getMaxRoomsNumber() + " rooms");
+            return;
+        }
+        joinedRoomNames.add(roomName);
+        boolean isNewMember = joinRoomResult == ServerModel.JoinRoomResult.JOINED;
+        ChatRoom room = serverModel.getRoom(roomName);
+        Set<String> memberUsernames = new HashSet<>();
+        if (room != null) {
+            for (ChatUserRecord member : room.getMembers()) {
+                memberUsernames.add(member.username());
+            }
+        }
+        userConnection.send(Message.builder()
+                .messageType(MessageType.JOIN_ROOM)
+                .roomName(roomName)
+                .connectedUsernames(memberUsernames)
+                .build());
+        if (isNewMember) {
+            sendPresenceToRoom(MessageType.NEW_USER_ADDED, roomName);
+        }
+    }
+
+    private void handleLeaveRoomRequest(String roomName) {
+        if (Message.DEFAULT_ROOM_NAME.equals(roomName)) {
+            sendError("The room " + Message.DEFAULT_ROOM_NAME + " can't be left");
+            return;
+        }
+        if (!leaveRoom(roomName)) {
+            sendError("You are not a member of the room " + roomName);
+            return;
+        }
+        userConnection.send(Message.builder()
+                .messageType(MessageType.LEAVE_ROOM)
+                .roomName(roomName)
+                .build());
+    }
+
+    private boolean joinRoom(String roomName) {
+        joinedRoomNames.add(roomName);
+        return serverModel.joinRoom(roomName, userRecord);
+    }
+
+    private boolean leaveRoom(String roomName) {
+        if (!joinedRoomNames.remove(roomName) || !serverModel.leaveRoom(roomName, userRecord)) {
+            return false;
+        }
+        if (Message.DEFAULT_ROOM_NAME.equals(roomName)) {
+            serverController.getPresenceService().removeOnlineUser(userRecord);
+        } else {
+            sendPresenceToRoom(MessageType.USER_DELETED, roomName);
+        }
+        return true;
+    }
+
+    private void leaveAllRooms() {
+        for (String roomName : new ArrayList<>(joinedRoomNames)) {
+            leaveRoom(roomName);
+        }
+    }
+
+    private void sendPresenceToRoom(MessageType presenceType, String roomName) {
+        serverController.sendRoomMessage(roomName, Message.builder()
+                .messageType(presenceType)
+                .messageText(userRecord.username())
+                .roomName(roomName)
+                .build());
+    }
+
+    private void sendError(String errorText) {
+        userConnection.send(new Message(MessageType.ERROR, errorText));
+    }
+
+    private void disableExistedUserFromChat() {
+        state = State.FINISHED;
+        cancelHeartbeatCheck();
+        removeUserFromServerModel();
+        closeConnectionAfterQueuedFrames();
+        serverController.addServiceMessageToServerLogs(
+                "The user with remote address " + userConnection.getRemoteSocketAddress() + " has disconnected");
+    }
+
+    /**
+     * Lets the connection write the frames already queued for the user, and closes it anyway after a short deadline
+     * when the user stops reading.
+     */
+    private void closeConnectionAfterQueuedFrames() {
+        HashedWheelTimer timer = serverController.getTimer();
+        if (userConnection.closeGracefully().isDone() || timer == null) {
+            return;
+        }
+        timer.newTimeout(() -> {
+            try {
+                userConnection.close();
+            } catch (IOException ignored) {
+            }
+        }, DISCONNECT_DRAIN_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private void removeUserFromServerModel() {
+        leaveAllRooms();
+        if (serverController.removeOnlineUser(userRecord)) {
+            serverController.notifyObservers(new Message(MessageType.NOTIFY_REMOVE, userRecord.username()));
+        }
+    }
+}
@@ -1,22 +1,63 @@
 package utilities;
 
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Collection;
+import java.util.stream.Collectors;
 
 public class FormatMessagesBuilder {
+    private static final DateTimeFormatter DATE_FORMATTER =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss z").withZone(ZoneId.systemDefault());
+
+    private static final DateTimeFormatter TIME_FORMATTER =
+            DateTimeFormatter.ofPattern("HH:mm:ss").withZone(ZoneId.systemDefault());
+
+    private static final int MAX_SUMMARIZED_USERNAMES = 10;
+
     public static String buildMessageWithDateNow(String message) {
-        return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss z").format(Calendar.getInstance().getTime()) + " | " + message + "\n";
+        return buildDateNow() + " | " + message + "\n";
     }
 
     public static String buildDateNow() {
-        return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss z").format(Calendar.getInstance().getTime());
+        return DATE_FORMATTER.format(Instant.now());
+    }
+
+    public static String buildDate(long epochMillis) {
+        return DATE_FORMATTER.format(Instant.ofEpochMilli(epochMillis));
     }
 
     public static String buildChatTextAreaUserMessage(String username, String text) {
         return "[¯\\_(ツ)_/¯] " + username + "\n" + text + "\n";
     }
 
+    public static String buildChatTextAreaUserMessage(String username, String text, long epochMillis) {
+        return "[¯\\_(ツ)_/¯] " + username + " " + TIME_FORMATTER.format(Instant.ofEpochMilli(epochMillis)) + "\n" + text + "\n";
+    }
+
     public static String buildChatTextAreaServiceMessage(String text) {
         return "[( ͡° ͜ʖ ͡°)] SERVICE MESSAGE\n" + text + "\n";
     }
+
+    public static String buildPresenceSummary(Collection<String> joinedUsernames, Collection<String> leftUsernames) {
+        StringBuilder summary = new StringBuilder();
+        appendPresenceSummaryLine(summary, joinedUsernames, "joined to the chat");
+        appendPresenceSummaryLine(summary, leftUsernames, "left from the chat");
+        return summary.toString().trim();
+    }
+
+    private static void appendPresenceSummaryLine(StringBuilder summary, Collection<String> usernames, String action) {
+        if (usernames == null || usernames.isEmpty()) {
+            return;
+        }
+        String summarizedUsernames = usernames.stream()
+                .sorted()
+                .limit(MAX_SUMMARIZED_USERNAMES)
+                .collect(Collectors.joining(", "));
+        if (usernames.size() > MAX_SUMMARIZED_USERNAMES) {
+            summarizedUsernames += " and " + (usernames.size() - MAX_SUMMARIZED_USERNAMES) + " more";
+        }
+        summary.append(usernames.size() == 1 ? "The user " : "The users ")
+                .append(summarizedUsernames).append(' ').append(action).append('\n');
+    }
 }
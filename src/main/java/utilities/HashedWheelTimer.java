@@ -0,0 +1,222 @@
+package utilities;
+
+import java.io.Closeable;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs many one-shot timeouts on a single worker thread. Timeouts are hashed into a ring of buckets by their
+ * deadline tick, so scheduling and cancelling cost O(1) and every tick only walks one bucket; a timeout fires
+ * up to one tick late. Tasks run on the worker thread and must not block.
+ */
+public class HashedWheelTimer implements Closeable {
+    private static final int MAX_TRANSFERRED_TIMEOUTS_PER_TICK = 100000;
+
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int wheelMask;
+    private final Queue<Timeout> pendingTimeouts = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelledTimeouts = new ConcurrentLinkedQueue<>();
+    private final Thread workerThread;
+    private final long startNanos;
+    private volatile boolean isClosed;
+    private long tick;
+
+    public HashedWheelTimer(ThreadFactory threadFactory, long tickDuration, TimeUnit unit, int ticksPerWheel) {
+        if (tickDuration <= 0 || ticksPerWheel <= 0) {
+            throw new IllegalArgumentException("Tick duration and wheel size must be positive");
+        }
+        this.tickNanos = unit.toNanos(tickDuration);
+        int wheelSize = 1;
+        while (wheelSize < ticksPerWheel) {
+            wheelSize <<= 1;
+        }
+        this.wheel = new Bucket[wheelSize];
+        for (int i = 0; i < wheel.length; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.wheelMask = wheel.length - 1;
+        this.startNanos = System.nanoTime();
+        this.workerThread = threadFactory.newThread(this::runWorker);
+    }
+
+    public void start() {
+        workerThread.start();
+    }
+
+    /**
+     * Schedules a one-shot task. A timeout scheduled on a closed timer is returned cancelled and never fires.
+     */
+    public Timeout newTimeout(Runnable task, long delay, TimeUnit unit) {
+        Timeout timeout = new Timeout(this, task, System.nanoTime() - startNanos + unit.toNanos(Math.max(0, delay)));
+        if (isClosed) {
+            timeout.state.set(Timeout.CANCELLED_STATE);
+            return timeout;
+        }
+        pendingTimeouts.add(timeout);
+        return timeout;
+    }
+
+    private void runWorker() {
+        while (!isClosed) {
+            long tickDeadlineNanos = waitForNextTick();
+            if (tickDeadlineNanos < 0) {
+                break;
+            }
+            removeCancelledTimeouts();
+            transferPendingTimeouts();
+            wheel[(int) (tick & wheelMask)].expireTimeouts(tickDeadlineNanos);
+            tick++;
+        }
+    }
+
+    private long waitForNextTick() {
+        long tickDeadlineNanos = tickNanos * (tick + 1);
+        while (true) {
+            long sleepNanos = tickDeadlineNanos - (System.nanoTime() - startNanos);
+            if (sleepNanos <= 0) {
+                return tickDeadlineNanos;
+            }
+            try {
+                TimeUnit.NANOSECONDS.sleep(sleepNanos);
+            } catch (InterruptedException exception) {
+                if (isClosed) {
+                    return -1;
+                }
+            }
+        }
+    }
+
+    private void removeCancelledTimeouts() {
+        Timeout timeout;
+        while ((timeout = cancelledTimeouts.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    private void transferPendingTimeouts() {
+        for (int i = 0; i < MAX_TRANSFERRED_TIMEOUTS_PER_TICK; i++) {
+            Timeout timeout = pendingTimeouts.poll();
+            if (timeout == null) {
+                return;
+            }
+            if (timeout.isCancelled()) {
+                continue;
+            }
+            long deadlineTick = timeout.deadlineNanos / tickNanos;
+            timeout.remainingRounds = (deadlineTick - tick) / wheel.length;
+            wheel[(int) (Math.max(deadlineTick, tick) & wheelMask)].add(timeout);
+        }
+    }
+
+    @Override
+    public void close() {
+        isClosed = true;
+        workerThread.interrupt();
+        pendingTimeouts.clear();
+        cancelledTimeouts.clear();
+    }
+
+    public static final class Timeout {
+        private static final int INITIAL_STATE = 0;
+        private static final int CANCELLED_STATE = 1;
+        private static final int EXPIRED_STATE = 2;
+
+        private final HashedWheelTimer timer;
+        private final Runnable task;
+        private final long deadlineNanos;
+        private final AtomicInteger state = new AtomicInteger(INITIAL_STATE);
+        private long remainingRounds;
+        private Bucket bucket;
+        private Timeout next;
+        private Timeout previous;
+
+        private Timeout(HashedWheelTimer timer, Runnable task, long deadlineNanos) {
+            this.timer = timer;
+            this.task = task;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        public boolean cancel() {
+            if (!state.compareAndSet(INITIAL_STATE, CANCELLED_STATE)) {
+                return false;
+            }
+            timer.cancelledTimeouts.add(this);
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return state.get() == CANCELLED_STATE;
+        }
+
+        public boolean isExpired() {
+            return state.get() == EXPIRED_STATE;
+        }
+
+        private void expire() {
+            if (!state.compareAndSet(INITIAL_STATE, EXPIRED_STATE)) {
+                return;
+            }
+            try {
+                task.run();
+            } catch (RuntimeException ignored) {
+            }
+        }
+    }
+
+    private static final class Bucket {
+        private Timeout head;
+        private Timeout tail;
+
+        private void add(Timeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.previous = tail;
+                tail = timeout;
+            }
+        }
+
+        private void expireTimeouts(long tickDeadlineNanos) {
+            Timeout timeout = head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.isCancelled()) {
+                    remove(timeout);
+                } else if (timeout.remainingRounds <= 0 && timeout.deadlineNanos <= tickDeadlineNanos) {
+                    remove(timeout);
+                    timeout.expire();
+                } else {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+        }
+
+        private void remove(Timeout timeout) {
+            if (timeout.bucket != this) {
+                return;
+            }
+            if (timeout.previous != null) {
+                timeout.previous.next = timeout.next;
+            } else {
+                head = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.previous = timeout.previous;
+            } else {
+                tail = timeout.previous;
+            }
+            timeout.next = null;
+            timeout.previous = null;
+            timeout.bucket = null;
+        }
+    }
+}
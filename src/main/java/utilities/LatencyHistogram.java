@@ -0,0 +1,91 @@
+package utilities;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS_NUMBER = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS_NUMBER = (Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS_NUMBER;
+
+    private final AtomicLongArray bucketCounts = new AtomicLongArray(BUCKETS_NUMBER);
+    private final LongAdder totalCount = new LongAdder();
+    private final LongAdder totalValue = new LongAdder();
+    private final AtomicLong maxValue = new AtomicLong();
+
+    public void record(long value) {
+        long nonNegativeValue = Math.max(0, value);
+        bucketCounts.incrementAndGet(getBucketIndex(nonNegativeValue));
+        totalCount.increment();
+        totalValue.add(nonNegativeValue);
+        if (nonNegativeValue > maxValue.get()) {
+            maxValue.accumulateAndGet(nonNegativeValue, Math::max);
+        }
+    }
+
+    public long getCount() {
+        return totalCount.sum();
+    }
+
+    public long getMax() {
+        return maxValue.get();
+    }
+
+    public double getMean() {
+        long count = totalCount.sum();
+        return count == 0 ? 0 : (double) totalValue.sum() / count;
+    }
+
+    public long getValueAtPercentile(double percentile) {
+        long[] counts = new long[BUCKETS_NUMBER];
+        long count = 0;
+        for (int i = 0; i < BUCKETS_NUMBER; i++) {
+            counts[i] = bucketCounts.get(i);
+            count += counts[i];
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long targetRank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+        long seenCount = 0;
+        for (int i = 0; i < BUCKETS_NUMBER; i++) {
+            seenCount += counts[i];
+            if (seenCount >= targetRank) {
+                return Math.min(getBucketUpperBound(i), maxValue.get());
+            }
+        }
+        return maxValue.get();
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS_NUMBER; i++) {
+            bucketCounts.set(i, 0);
+        }
+        totalCount.reset();
+        totalValue.reset();
+        maxValue.set(0);
+    }
+
+    private static int getBucketIndex(long value) {
+        if (value < SUB_BUCKETS_NUMBER) {
+            return (int) value;
+        }
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) & (SUB_BUCKETS_NUMBER - 1);
+        return (shift + 1) * SUB_BUCKETS_NUMBER + subBucket;
+    }
+
+    private static long getBucketUpperBound(int bucketIndex) {
+        if (bucketIndex < SUB_BUCKETS_NUMBER) {
+            return bucketIndex;
+        }
+        int shift = bucketIndex / SUB_BUCKETS_NUMBER - 1;
+        if (shift >= Long.SIZE - SUB_BUCKET_BITS - 2) {
+            return Long.MAX_VALUE;
+        }
+        long subBucket = bucketIndex % SUB_BUCKETS_NUMBER;
+        return ((SUB_BUCKETS_NUMBER + subBucket + 1) << shift) - 1;
+    }
+}
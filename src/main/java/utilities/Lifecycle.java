@@ -0,0 +1,94 @@
+package utilities;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class Lifecycle {
+    public enum State {
+        STOPPED,
+        STARTING,
+        RUNNING,
+        STOPPING
+    }
+
+    private final Lock stateLock = new ReentrantLock();
+    private final Condition stateChanged = stateLock.newCondition();
+    private volatile State state = State.STOPPED;
+    private volatile long runGeneration;
+
+    public State getState() {
+        return state;
+    }
+
+    public boolean isInState(State expectedState) {
+        return state == expectedState;
+    }
+
+    public boolean isRunning() {
+        return state == State.RUNNING;
+    }
+
+    public boolean isRunning(long expectedRunGeneration) {
+        return state == State.RUNNING && runGeneration == expectedRunGeneration;
+    }
+
+    public boolean compareAndSetState(State expectedState, State newState) {
+        stateLock.lock();
+        try {
+            if (state != expectedState) {
+                return false;
+            }
+            changeState(newState);
+            return true;
+        } finally {
+            stateLock.unlock();
+        }
+    }
+
+    public void setState(State newState) {
+        stateLock.lock();
+        try {
+            changeState(newState);
+        } finally {
+            stateLock.unlock();
+        }
+    }
+
+    private void changeState(State newState) {
+        if (newState == State.RUNNING && state != State.RUNNING) {
+            runGeneration++;
+        }
+        state = newState;
+        stateChanged.signalAll();
+    }
+
+    public void awaitState(State expectedState) throws InterruptedException {
+        stateLock.lock();
+        try {
+            while (state != expectedState) {
+                stateChanged.await();
+            }
+        } finally {
+            stateLock.unlock();
+        }
+    }
+
+    /**
+     * Waits for a run that started after {@code previousRunGeneration}. Unlike waiting for an exact state,
+     * this cannot miss a stop and restart that happened while the caller was busy.
+     *
+     * @return the generation of the current run
+     */
+    public long awaitNextRun(long previousRunGeneration) throws InterruptedException {
+        stateLock.lock();
+        try {
+            while (state != State.RUNNING || runGeneration == previousRunGeneration) {
+                stateChanged.await();
+            }
+            return runGeneration;
+        } finally {
+            stateLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package utilities;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket kept as the theoretical arrival time of the next token, so one CAS both refills
+ * and takes a token. A bucket refills {@code tokensPerSecond} tokens per second and holds at most {@code burstSize}.
+ */
+public class TokenBucket {
+    private final long tokenIntervalNanos;
+    private final long burstNanos;
+    private final AtomicLong nextTokenNanos;
+
+    public TokenBucket(double tokensPerSecond, int burstSize) {
+        if (tokensPerSecond <= 0 || burstSize <= 0) {
+            throw new IllegalArgumentException("Token rate and burst size must be positive");
+        }
+        this.tokenIntervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / tokensPerSecond));
+        this.burstNanos = tokenIntervalNanos * burstSize;
+        this.nextTokenNanos = new AtomicLong(System.nanoTime() - burstNanos);
+    }
+
+    /**
+     * Takes a token if one is available.
+     *
+     * @return 0 when a token was taken, otherwise the nanoseconds until the next token is available
+     */
+    public long tryAcquire() {
+        while (true) {
+            long nowNanos = System.nanoTime();
+            long currentNextTokenNanos = nextTokenNanos.get();
+            long updatedNextTokenNanos = Math.max(currentNextTokenNanos, nowNanos - burstNanos) + tokenIntervalNanos;
+            long waitNanos = updatedNextTokenNanos - nowNanos;
+            if (waitNanos > 0) {
+                return waitNanos;
+            }
+            if (nextTokenNanos.compareAndSet(currentNextTokenNanos, updatedNextTokenNanos)) {
+                return 0;
+            }
+        }
+    }
+
+    public void refund() {
+        nextTokenNanos.addAndGet(-tokenIntervalNanos);
+    }
+}
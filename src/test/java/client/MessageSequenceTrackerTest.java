@@ -0,0 +1,58 @@
+package client;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MessageSequenceTrackerTest {
+    private final MessageSequenceTracker tracker = new MessageSequenceTracker();
+
+    @Test
+    void countsNothingForConsecutiveNumbers() {
+        for (long sequenceNumber = 10; sequenceNumber < 20; sequenceNumber++) {
+            assertEquals(0, tracker.registerSequenceNumberAndCountLostOnes(sequenceNumber));
+        }
+    }
+
+    @Test
+    void forgivesGapFilledWithinTheReorderingWindow() {
+        tracker.registerSequenceNumberAndCountLostOnes(1);
+        assertEquals(0, tracker.registerSequenceNumberAndCountLostOnes(4));
+        assertEquals(0, tracker.registerSequenceNumberAndCountLostOnes(3));
+        assertEquals(0, tracker.registerSequenceNumberAndCountLostOnes(2));
+
+        assertEquals(0, countLostOnesUpTo(5, 1000));
+    }
+
+    @Test
+    void countsGapOnceItLeavesTheReorderingWindow() {
+        tracker.registerSequenceNumberAndCountLostOnes(1);
+        assertEquals(0, tracker.registerSequenceNumberAndCountLostOnes(4));
+
+        assertEquals(2, countLostOnesUpTo(5, 1000));
+    }
+
+    @Test
+    void countsHugeGapAtOnce() {
+        tracker.registerSequenceNumberAndCountLostOnes(1);
+
+        assertEquals(9998, tracker.registerSequenceNumberAndCountLostOnes(10000));
+    }
+
+    @Test
+    void ignoresDuplicates() {
+        tracker.registerSequenceNumberAndCountLostOnes(1);
+        tracker.registerSequenceNumberAndCountLostOnes(2);
+
+        assertEquals(0, tracker.registerSequenceNumberAndCountLostOnes(2));
+        assertEquals(0, tracker.registerSequenceNumberAndCountLostOnes(1));
+    }
+
+    private long countLostOnesUpTo(long fromSequenceNumber, long toSequenceNumber) {
+        long lostMessagesNumber = 0;
+        for (long sequenceNumber = fromSequenceNumber; sequenceNumber <= toSequenceNumber; sequenceNumber++) {
+            lostMessagesNumber += tracker.registerSequenceNumberAndCountLostOnes(sequenceNumber);
+        }
+        return lostMessagesNumber;
+    }
+}
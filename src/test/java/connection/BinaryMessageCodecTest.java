@@ -0,0 +1,91 @@
+package connection;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BinaryMessageCodecTest {
+    private final BinaryMessageCodec codec = new BinaryMessageCodec();
+
+    @Test
+    void decodesEveryFieldOfAnEncodedMessage() throws IOException {
+        Message message = Message.builder()
+                .messageType(MessageType.TEXT_MESSAGE)
+                .messageText("hello, мир")
+                .connectedUsernames(Set.of("alice", "bob"))
+                .handshakeOptions(Map.of(MessageCodecType.SELECTED_CODEC_OPTION, "binary"))
+                .senderUsername("alice")
+                .sequenceNumber(Long.MAX_VALUE)
+                .timestampMillis(1_700_000_000_000L)
+                .roomName("general")
+                .roomNames(Set.of("general", "dev"))
+                .recipientUsername("bob")
+                .rosterVersion(42L)
+                .baseRosterVersion(41L)
+                .disconnectedUsernames(Set.of("carol"))
+                .build();
+
+        Message decodedMessage = codec.decode(ByteBuffer.wrap(codec.encode(message)));
+
+        assertEquals(MessageType.TEXT_MESSAGE, decodedMessage.getMessageType());
+        assertEquals("hello, мир", decodedMessage.getMessageText());
+        assertEquals(Set.of("alice", "bob"), decodedMessage.getConnectedUsernames());
+        assertEquals(Map.of(MessageCodecType.SELECTED_CODEC_OPTION, "binary"), decodedMessage.getHandshakeOptions());
+        assertEquals("alice", decodedMessage.getSenderUsername());
+        assertEquals(Long.MAX_VALUE, decodedMessage.getSequenceNumber());
+        assertEquals(1_700_000_000_000L, decodedMessage.getTimestampMillis());
+        assertEquals("general", decodedMessage.getRoomName());
+        assertEquals(Set.of("general", "dev"), decodedMessage.getRoomNames());
+        assertEquals("bob", decodedMessage.getRecipientUsername());
+        assertEquals(42L, decodedMessage.getRosterVersion());
+        assertEquals(41L, decodedMessage.getBaseRosterVersion());
+        assertEquals(Set.of("carol"), decodedMessage.getDisconnectedUsernames());
+    }
+
+    @Test
+    void decodesSparseMessageFromStream() throws IOException {
+        Message decodedMessage = codec.decode(new ByteArrayInputStream(codec.encode(new Message(MessageType.REQUEST_USERNAME))));
+
+        assertEquals(MessageType.REQUEST_USERNAME, decodedMessage.getMessageType());
+        assertNull(decodedMessage.getMessageText());
+        assertNull(decodedMessage.getSequenceNumber());
+    }
+
+    @Test
+    void leavesTruncatedFrameInBuffer() throws IOException {
+        byte[] frame = codec.encode(new Message(MessageType.TEXT_MESSAGE, "a message split between reads"));
+        for (int length = 0; length < frame.length; length++) {
+            ByteBuffer buffer = ByteBuffer.wrap(Arrays.copyOf(frame, length));
+
+            assertNull(codec.decode(buffer));
+            assertEquals(0, buffer.position());
+        }
+    }
+
+    @Test
+    void failsOnTruncatedFrameInStream() {
+        byte[] frame = codec.encode(new Message(MessageType.TEXT_MESSAGE, "a message cut by a closed socket"));
+
+        assertThrows(EOFException.class,
+                () -> codec.decode(new ByteArrayInputStream(Arrays.copyOf(frame, frame.length - 1))));
+    }
+
+    @Test
+    void rejectsFrameLongerThanTheLimit() {
+        ByteArrayOutputStream frameHeader = new ByteArrayOutputStream();
+        BinaryMessageCodec.writeVarInt(frameHeader, MessageCodec.MAX_FRAME_LENGTH + 1);
+
+        assertThrows(IOException.class, () -> codec.decode(ByteBuffer.wrap(frameHeader.toByteArray())));
+    }
+}
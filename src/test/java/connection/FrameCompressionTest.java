@@ -0,0 +1,74 @@
+package connection;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FrameCompressionTest {
+    @Test
+    void compressesOnlyBinaryFramesFromTheThreshold() {
+        FrameCompression frameCompression = new FrameCompression(100);
+
+        assertFalse(frameCompression.shouldCompress(MessageCodecType.BINARY, 99));
+        assertTrue(frameCompression.shouldCompress(MessageCodecType.BINARY, 100));
+        assertFalse(frameCompression.shouldCompress(MessageCodecType.JSON, 100));
+    }
+
+    @Test
+    void inflatesBodyOfTheMaximumLength() throws IOException {
+        ByteBuffer inflatedBody = new FrameCompression(1).inflateBody(compressBody(MessageCodec.MAX_FRAME_LENGTH));
+
+        assertEquals(MessageCodec.MAX_FRAME_LENGTH, inflatedBody.remaining());
+    }
+
+    @Test
+    void rejectsBodyLongerThanTheMaximumLength() {
+        ByteBuffer compressedBody = compressBody(MessageCodec.MAX_FRAME_LENGTH + 1);
+
+        assertThrows(IOException.class, () -> new FrameCompression(1).inflateBody(compressedBody));
+    }
+
+    @Test
+    void keepsTheWindowBetweenFrames() throws IOException {
+        FrameCompression sendingCompression = new FrameCompression(1);
+        FrameCompression receivingCompression = new FrameCompression(1);
+        BinaryMessageCodec codec = new BinaryMessageCodec();
+        Message message = new Message(MessageType.TEXT_MESSAGE, "the same text ".repeat(20));
+
+        for (int i = 0; i < 3; i++) {
+            ByteBuffer compressedFrame = sendingCompression.compressFrame(ByteBuffer.wrap(codec.encode(message)));
+
+            assertEquals(message.getMessageText(), codec.decode(compressedFrame, receivingCompression).getMessageText());
+        }
+    }
+
+    @Test
+    void rejectsFramesAfterClose() {
+        FrameCompression frameCompression = new FrameCompression(1);
+        frameCompression.close();
+
+        assertThrows(IOException.class, () -> frameCompression.inflateBody(ByteBuffer.allocate(1)));
+    }
+
+    private static ByteBuffer compressBody(int bodyLength) {
+        ByteArrayOutputStream plainFrame = new ByteArrayOutputStream(bodyLength + 6);
+        BinaryMessageCodec.writeVarInt(plainFrame, bodyLength + 1);
+        plainFrame.write(BinaryMessageCodec.PLAIN_FRAME_FLAGS);
+        plainFrame.writeBytes(new byte[bodyLength]);
+        try {
+            ByteBuffer compressedFrame = new FrameCompression(1).compressFrame(ByteBuffer.wrap(plainFrame.toByteArray()));
+            BinaryMessageCodec.readVarInt(compressedFrame);
+            compressedFrame.get();
+            return compressedFrame.slice();
+        } catch (IOException exception) {
+            throw new IllegalStateException(exception);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package server;
+
+import connection.FrameCompression;
+import connection.Message;
+import connection.MessageCodecType;
+import connection.MessageType;
+import connection.UserConnection;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AsyncUserConnectionTest {
+    private static final int READ_TIMEOUT_MILLIS = 5000;
+
+    private final CountDownLatch writerStartLatch = new CountDownLatch(1);
+    private Socket serverSideSocket;
+    private Socket clientSideSocket;
+    private UserConnection clientConnection;
+
+    @BeforeEach
+    void connect() throws Exception {
+        try (ServerSocket serverSocket = new ServerSocket(0)) {
+            clientSideSocket = new Socket("localhost", serverSocket.getLocalPort());
+            serverSideSocket = serverSocket.accept();
+        }
+        clientSideSocket.setSoTimeout(READ_TIMEOUT_MILLIS);
+        clientConnection = new UserConnection(clientSideSocket);
+    }
+
+    @AfterEach
+    void disconnect() throws Exception {
+        writerStartLatch.countDown();
+        clientSideSocket.close();
+        serverSideSocket.close();
+    }
+
+    @Test
+    void framesKeepTheCodecSelectedWhenTheyWereQueued() throws Exception {
+        AsyncUserConnection connection = createConnection(ServerSettings.builder().compressionThresholdBytes(1).build());
+
+        connection.send(new Message(MessageType.REQUEST_USERNAME));
+        connection.setMessageCodecType(MessageCodecType.BINARY);
+        connection.setFrameCompression(new FrameCompression(1));
+        connection.send(new Message(MessageType.LOGIN_ACCEPTED));
+        writerStartLatch.countDown();
+
+        assertEquals(MessageType.REQUEST_USERNAME, clientConnection.receive().getMessageType());
+        clientConnection.setMessageCodecType(MessageCodecType.BINARY);
+        clientConnection.setFrameCompression(new FrameCompression(1));
+        assertEquals(MessageType.LOGIN_ACCEPTED, clientConnection.receive().getMessageType());
+    }
+
+    @Test
+    void writeBatchStopsAtACodecSwitch() throws Exception {
+        AsyncUserConnection connection = createConnection(ServerSettings.builder().writeBatchMaxBytes(64 * 1024).build());
+
+        connection.send(new Message(MessageType.REQUEST_USERNAME));
+        connection.send(new Message(MessageType.REQUEST_PASSWORD));
+        connection.setMessageCodecType(MessageCodecType.BINARY);
+        connection.send(new Message(MessageType.LOGIN_ACCEPTED));
+        writerStartLatch.countDown();
+
+        assertEquals(MessageType.REQUEST_USERNAME, clientConnection.receive().getMessageType());
+        assertEquals(MessageType.REQUEST_PASSWORD, clientConnection.receive().getMessageType());
+        clientConnection.setMessageCodecType(MessageCodecType.BINARY);
+        assertEquals(MessageType.LOGIN_ACCEPTED, clientConnection.receive().getMessageType());
+    }
+
+    @Test
+    void gracefulCloseSurvivesEvictionOfTheDrainMarker() throws Exception {
+        AsyncUserConnection connection = createConnection(ServerSettings.builder()
+                .outboundQueueHighWaterMark(2)
+                .overflowPolicy(OverflowPolicy.DROP_OLDEST)
+                .build());
+
+        CompletableFuture<Void> closeFuture = connection.closeGracefully();
+        for (int i = 0; i < 3; i++) {
+            connection.send(new Message(MessageType.TEXT_MESSAGE, "message " + i));
+        }
+        writerStartLatch.countDown();
+
+        assertEquals("message 1", clientConnection.receive().getMessageText());
+        assertEquals("message 2", clientConnection.receive().getMessageText());
+        closeFuture.get(READ_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        assertTrue(closeFuture.isDone());
+    }
+
+    @Test
+    void disconnectPolicyClosesTheConnectionWhenTheQueueIsFull() throws Exception {
+        List<String> serverLogMessages = new CopyOnWriteArrayList<>();
+        ServerController serverController = new ServerController() {
+            @Override
+            protected void addServiceMessageToServerLogs(String serviceMessage) {
+                serverLogMessages.add(serviceMessage);
+            }
+        };
+        AsyncUserConnection connection = createConnection(serverController, ServerSettings.builder()
+                .outboundQueueHighWaterMark(2)
+                .overflowPolicy(OverflowPolicy.DISCONNECT)
+                .build());
+
+        for (int i = 0; i < 3; i++) {
+            connection.send(new Message(MessageType.TEXT_MESSAGE, "message " + i));
+        }
+
+        assertTrue(connection.closeGracefully().isDone());
+        assertEquals(0, connection.getQueuedFramesNumber());
+        assertEquals(1, serverLogMessages.size());
+        assertTrue(serverLogMessages.get(0).contains("slow consumer"));
+    }
+
+    private AsyncUserConnection createConnection(ServerSettings serverSettings) throws Exception {
+        return createConnection(new ServerController(), serverSettings);
+    }
+
+    private AsyncUserConnection createConnection(ServerController serverController,
+                                                 ServerSettings serverSettings) throws Exception {
+        ThreadFactory delayedWriterThreadFactory = writerTask -> new Thread(() -> {
+            try {
+                writerStartLatch.await();
+            } catch (InterruptedException exception) {
+                return;
+            }
+            writerTask.run();
+        });
+        return new AsyncUserConnection(serverController, new UserConnection(serverSideSocket),
+                serverSettings, delayedWriterThreadFactory);
+    }
+}
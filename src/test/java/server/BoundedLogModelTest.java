@@ -0,0 +1,44 @@
+package server;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BoundedLogModelTest {
+    @Test
+    void evictsTheOldestLinesAndReportsTheirLength() {
+        BoundedLogModel logModel = new BoundedLogModel(3);
+
+        assertEquals(0, logModel.append("first\n"));
+        assertEquals(0, logModel.append("second\n"));
+        assertEquals(0, logModel.append("third\n"));
+        assertEquals("first\n".length(), logModel.append("fourth\n"));
+
+        assertEquals(3, logModel.size());
+        assertEquals("second\nthird\nfourth\n", logModel.buildText());
+        assertEquals(logModel.buildText().length(), logModel.getTextLength());
+    }
+
+    @Test
+    void splitsMultiLineEntryIntoBoundedLines() {
+        BoundedLogModel logModel = new BoundedLogModel(2);
+        logModel.append("kept\n");
+
+        int evictedLength = logModel.append("a\nb\nc");
+
+        assertEquals("kept\n".length() + "a\n".length(), evictedLength);
+        assertEquals(2, logModel.size());
+        assertEquals("b\nc", logModel.buildText());
+        assertEquals(3, logModel.getTextLength());
+    }
+
+    @Test
+    void keepsAtLeastOneLine() {
+        BoundedLogModel logModel = new BoundedLogModel(0);
+
+        logModel.append("only\n");
+
+        assertEquals(1, logModel.getCapacity());
+        assertEquals("only\n", logModel.buildText());
+    }
+}
@@ -0,0 +1,75 @@
+package server;
+
+import connection.FrameCompression;
+import connection.Message;
+import connection.MessageCodecType;
+import connection.MessageType;
+import connection.UserConnection;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LoginRequestCodecTest {
+    private static final int READ_TIMEOUT_MILLIS = 5000;
+
+    private ServerController serverController;
+    private int port;
+
+    @BeforeEach
+    void startBlockingServer() throws Exception {
+        try (ServerSocket freePortSocket = new ServerSocket(0)) {
+            port = freePortSocket.getLocalPort();
+        }
+        serverController = new ServerController();
+        serverController.setServerView(new ServerLogView());
+        serverController.setServerModel(new ServerModel());
+        serverController.setServerSettings(ServerSettings.builder()
+                .port(port)
+                .engineType(ServerEngineType.BLOCKING)
+                .compressionThresholdBytes(1)
+                .build());
+        serverController.startServerOnPort(port);
+        Thread launcher = new Thread(serverController::launch, "ServerLauncher");
+        launcher.setDaemon(true);
+        launcher.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        serverController.stopServer();
+    }
+
+    @Test
+    void loginRequestSentBeforeAnyReadIsAnsweredInJsonAndThenInTheSelectedCodec() throws Exception {
+        String password = serverController.getServerModel().getCurrentSessionPassword();
+        try (Socket socket = new Socket("localhost", port)) {
+            socket.setSoTimeout(READ_TIMEOUT_MILLIS);
+            UserConnection userConnection = new UserConnection(socket);
+            userConnection.send(Message.builder()
+                    .messageType(MessageType.LOGIN_REQUEST)
+                    .messageText("alice")
+                    .handshakeOptions(Map.of(
+                            MessageCodecType.SELECTED_CODEC_OPTION, MessageCodecType.BINARY.getCodecName(),
+                            FrameCompression.SELECTED_COMPRESSION_OPTION, FrameCompression.DEFLATE_COMPRESSION_NAME,
+                            Message.PASSWORD_OPTION, password))
+                    .build());
+
+            Message requestForUsername = userConnection.receive();
+            assertEquals(MessageType.REQUEST_USERNAME, requestForUsername.getMessageType());
+
+            userConnection.setMessageCodecType(MessageCodecType.BINARY);
+            userConnection.setFrameCompression(new FrameCompression(1));
+            Message loginResponse = userConnection.receive();
+            assertTrue(MessageType.isTypeLoginAccepted(loginResponse.getMessageType()),
+                    "Unexpected response " + loginResponse.getMessageType());
+            userConnection.send(new Message(MessageType.DISCONNECT));
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package server;
+
+import connection.Message;
+import connection.MessageType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MessageHistoryTest {
+    private static final int SEGMENT_BYTES = 1024;
+    private static final int MAX_SEGMENTS_NUMBER = 3;
+    private static final int MESSAGES_NUMBER = 200;
+
+    @TempDir
+    Path historyDirectory;
+
+    @Test
+    void recoversLastSequenceNumbersAfterRestart() throws IOException {
+        appendMessagesAndClose();
+
+        try (MessageHistory messageHistory = MessageHistory.open(createSettings())) {
+            assertEquals(MESSAGES_NUMBER, messageHistory.getLastSequenceNumber("general"));
+            assertEquals(MESSAGES_NUMBER - 1, messageHistory.getLastSequenceNumber("dev"));
+            assertEquals(7, messageHistory.getLastSequenceNumber("old"));
+            assertEquals(0, messageHistory.getLastSequenceNumber("unknown"));
+        }
+    }
+
+    @Test
+    void recoversAppendsThatNoCheckpointCovers() throws IOException {
+        appendMessagesAndClose();
+        MessageHistory crashedHistory = MessageHistory.open(createSettings());
+        crashedHistory.append(createMessage("general", MESSAGES_NUMBER + 2));
+
+        try (MessageHistory messageHistory = MessageHistory.open(createSettings())) {
+            assertEquals(MESSAGES_NUMBER + 2, messageHistory.getLastSequenceNumber("general"));
+        } finally {
+            crashedHistory.close();
+        }
+    }
+
+    @Test
+    void recoversWithoutCheckpointsByDecodingSegments() throws IOException {
+        appendMessagesAndClose();
+        try (Stream<Path> historyPaths = Files.list(historyDirectory)) {
+            for (Path checkpointPath : historyPaths.filter(path -> path.toString().endsWith(".checkpoint")).toList()) {
+                Files.delete(checkpointPath);
+            }
+        }
+
+        try (MessageHistory messageHistory = MessageHistory.open(createSettings())) {
+            assertEquals(MESSAGES_NUMBER, messageHistory.getLastSequenceNumber("general"));
+            assertEquals(MESSAGES_NUMBER - 1, messageHistory.getLastSequenceNumber("dev"));
+        }
+    }
+
+    @Test
+    void keepsOnlyTheConfiguredNumberOfSegments() throws IOException {
+        appendMessagesAndClose();
+
+        try (Stream<Path> historyPaths = Files.list(historyDirectory)) {
+            assertEquals(MAX_SEGMENTS_NUMBER, historyPaths.filter(HistorySegment::isSegmentFile).count());
+        }
+    }
+
+    @Test
+    void replaysTheRequestedNumberOfMatchingMessages() throws IOException {
+        appendMessagesAndClose();
+
+        try (MessageHistory messageHistory = MessageHistory.open(createSettings())) {
+            List<Long> replayedSequenceNumbers = messageHistory.readLast(5, message -> "general".equals(message.getRoomName()))
+                    .stream()
+                    .map(Message::getSequenceNumber)
+                    .toList();
+            List<Message> lastMessages = messageHistory.readLast(3);
+
+            assertEquals(List.of(192L, 194L, 196L, 198L, 200L), replayedSequenceNumbers);
+            assertEquals(List.of(198L, 199L, 200L), lastMessages.stream().map(Message::getSequenceNumber).toList());
+        }
+    }
+
+    @Test
+    void rejectsAppendAfterClose() throws IOException {
+        MessageHistory messageHistory = MessageHistory.open(createSettings());
+        messageHistory.close();
+
+        IOException exception = assertThrows(IOException.class, () -> messageHistory.append(createMessage("general", 1)));
+        assertTrue(exception.getMessage().contains("closed"));
+    }
+
+    private void appendMessagesAndClose() throws IOException {
+        try (MessageHistory messageHistory = MessageHistory.open(createSettings())) {
+            messageHistory.append(createMessage("old", 7));
+            for (int sequenceNumber = 1; sequenceNumber <= MESSAGES_NUMBER; sequenceNumber++) {
+                messageHistory.append(createMessage(sequenceNumber % 2 == 0 ? "general" : "dev", sequenceNumber));
+            }
+        }
+    }
+
+    private ServerSettings createSettings() {
+        return ServerSettings.builder()
+                .historyDirectory(historyDirectory.toString())
+                .historySegmentBytes(SEGMENT_BYTES)
+                .historyMaxSegmentsNumber(MAX_SEGMENTS_NUMBER)
+                .historyFsyncIntervalMillis(50)
+                .build();
+    }
+
+    private static Message createMessage(String roomName, long sequenceNumber) {
+        return Message.builder()
+                .messageType(MessageType.TEXT_MESSAGE)
+                .messageText("message " + sequenceNumber)
+                .roomName(roomName)
+                .sequenceNumber(sequenceNumber)
+                .build();
+    }
+}
@@ -0,0 +1,43 @@
+package server;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OutboundQueueTest {
+    @Test
+    void dropOldestEvictsTheHeadWhenFull() {
+        OutboundQueue<Integer> queue = new OutboundQueue<>(2, OverflowPolicy.DROP_OLDEST);
+
+        assertTrue(queue.offer(1));
+        assertTrue(queue.offer(2));
+        assertTrue(queue.offer(3));
+
+        assertEquals(2, queue.size());
+        assertEquals(2, queue.poll());
+        assertEquals(3, queue.poll());
+    }
+
+    @Test
+    void disconnectRejectsTheElementAndKeepsTheQueue() {
+        OutboundQueue<Integer> queue = new OutboundQueue<>(2, OverflowPolicy.DISCONNECT);
+
+        assertTrue(queue.offer(1));
+        assertTrue(queue.offer(2));
+        assertFalse(queue.offer(3));
+
+        assertEquals(2, queue.size());
+        assertEquals(1, queue.poll());
+        assertEquals(2, queue.poll());
+    }
+
+    @Test
+    void holdsAtLeastOneElement() {
+        OutboundQueue<Integer> queue = new OutboundQueue<>(0, OverflowPolicy.DISCONNECT);
+
+        assertTrue(queue.offer(1));
+        assertFalse(queue.offer(2));
+    }
+}
@@ -0,0 +1,142 @@
+package server;
+
+import connection.ChatUserRecord;
+import connection.EncodedFrame;
+import connection.FrameCompression;
+import connection.Message;
+import connection.MessageCodecType;
+import connection.MessageConnection;
+import connection.MessageType;
+import connection.UserMetaInfo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.SocketAddress;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PresenceServiceTest {
+    private static final long TICK_MILLIS = 10;
+    private static final long AWAIT_MILLIS = 5000;
+
+    private PresenceService presenceService;
+
+    @BeforeEach
+    void startPresenceService() {
+        presenceService = new PresenceService(new ServerController());
+        presenceService.start(TICK_MILLIS, runnable -> {
+            Thread thread = new Thread(runnable, "PresenceServiceTest");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @AfterEach
+    void closePresenceService() {
+        presenceService.close();
+    }
+
+    @Test
+    void deltaStartsFromTheVersionOfThePreviousOne() throws InterruptedException {
+        RecordingConnection aliceConnection = new RecordingConnection();
+        Message loginAccepted = presenceService.addOnlineUser(createUserRecord("alice", aliceConnection), true);
+        assertEquals(1L, loginAccepted.getRosterVersion());
+        assertEquals(Set.of("alice"), loginAccepted.getConnectedUsernames());
+
+        Message firstDelta = aliceConnection.receive();
+        assertEquals(0L, firstDelta.getBaseRosterVersion());
+        assertEquals(1L, firstDelta.getRosterVersion());
+        assertEquals(Set.of("alice"), firstDelta.getConnectedUsernames());
+
+        presenceService.addRemoteUsername("bob");
+        Message secondDelta = aliceConnection.receive();
+        assertEquals(1L, secondDelta.getBaseRosterVersion());
+        assertEquals(2L, secondDelta.getRosterVersion());
+        assertEquals(Set.of("bob"), secondDelta.getConnectedUsernames());
+
+        presenceService.removeRemoteUsername("bob");
+        Message thirdDelta = aliceConnection.receive();
+        assertEquals(2L, thirdDelta.getBaseRosterVersion());
+        assertEquals(3L, thirdDelta.getRosterVersion());
+        assertEquals(Set.of("bob"), thirdDelta.getDisconnectedUsernames());
+        assertTrue(thirdDelta.getConnectedUsernames().isEmpty());
+
+        Message snapshot = presenceService.buildRosterSnapshot();
+        assertEquals(3L, snapshot.getRosterVersion());
+        assertEquals(Set.of("alice"), snapshot.getConnectedUsernames());
+    }
+
+    @Test
+    void repeatedChangesDoNotBumpTheVersion() {
+        presenceService.addRemoteUsername("bob");
+        presenceService.addRemoteUsername("bob");
+        presenceService.removeRemoteUsername("carol");
+
+        assertEquals(1L, presenceService.buildRosterSnapshot().getRosterVersion());
+    }
+
+    @Test
+    void legacySubscriberGetsPerUserMessagesWithoutVersions() throws InterruptedException {
+        RecordingConnection aliceConnection = new RecordingConnection();
+        Message loginAccepted = presenceService.addOnlineUser(createUserRecord("alice", aliceConnection), false);
+        assertNull(loginAccepted.getRosterVersion());
+
+        presenceService.addRemoteUsername("bob");
+        Message userAdded = aliceConnection.receive();
+        assertEquals(MessageType.NEW_USER_ADDED, userAdded.getMessageType());
+        assertEquals("bob", userAdded.getMessageText());
+        assertNull(userAdded.getRosterVersion());
+    }
+
+    private static ChatUserRecord createUserRecord(String username, MessageConnection userConnection) {
+        return new ChatUserRecord(userConnection, username, UserMetaInfo.builder()
+                .username(username)
+                .firstConnectionTimeMillis(System.currentTimeMillis())
+                .build());
+    }
+
+    private static class RecordingConnection implements MessageConnection {
+        private final BlockingQueue<Message> sentMessages = new LinkedBlockingQueue<>();
+
+        @Override
+        public void send(EncodedFrame frame) {
+            sentMessages.add(frame.getMessage());
+        }
+
+        Message receive() throws InterruptedException {
+            Message message = sentMessages.poll(AWAIT_MILLIS, TimeUnit.MILLISECONDS);
+            assertNotNull(message, "No presence message was sent");
+            return message;
+        }
+
+        @Override
+        public MessageCodecType getMessageCodecType() {
+            return MessageCodecType.BINARY;
+        }
+
+        @Override
+        public void setMessageCodecType(MessageCodecType codecType) {
+        }
+
+        @Override
+        public void setFrameCompression(FrameCompression frameCompression) {
+        }
+
+        @Override
+        public SocketAddress getRemoteSocketAddress() {
+            return null;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package server;
+
+import connection.ChatUserRecord;
+import connection.UserMetaInfo;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ServerMetricsTest {
+    @Test
+    void sentMessagesRateCoversOnlyTheLastSampleInterval() throws InterruptedException {
+        List<ChatUserRecord> onlineUsers = new CopyOnWriteArrayList<>();
+        ServerMetrics serverMetrics = new ServerMetrics(() -> onlineUsers);
+        UserMetaInfo aliceMetaInfo = createUserMetaInfo("alice");
+        onlineUsers.add(new ChatUserRecord(null, "alice", aliceMetaInfo));
+        assertTrue(serverMetrics.getSentMessagesRateByUser().isEmpty());
+
+        sendMessages(aliceMetaInfo, 10);
+        TimeUnit.MILLISECONDS.sleep(1100);
+        Map<String, Double> firstRates = serverMetrics.getSentMessagesRateByUser();
+        assertTrue(firstRates.get("alice") > 0 && firstRates.get("alice") <= 10, "Unexpected rate " + firstRates);
+        assertEquals(firstRates, serverMetrics.getSentMessagesRateByUser());
+
+        TimeUnit.MILLISECONDS.sleep(1100);
+        assertEquals(0.0, serverMetrics.getSentMessagesRateByUser().get("alice"));
+        assertEquals(10, serverMetrics.getSentMessagesNumberByUser().get("alice"));
+    }
+
+    private static UserMetaInfo createUserMetaInfo(String username) {
+        return UserMetaInfo.builder()
+                .username(username)
+                .firstConnectionTimeMillis(System.currentTimeMillis())
+                .build();
+    }
+
+    private static void sendMessages(UserMetaInfo userMetaInfo, int messagesNumber) {
+        for (int i = 0; i < messagesNumber; i++) {
+            userMetaInfo.updateLastMessageTime();
+        }
+    }
+}
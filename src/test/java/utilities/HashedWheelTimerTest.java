@@ -0,0 +1,89 @@
+package utilities;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HashedWheelTimerTest {
+    private static final long TICK_MILLIS = 10;
+    private static final int TICKS_PER_WHEEL = 8;
+    private static final long AWAIT_MILLIS = 5000;
+
+    private HashedWheelTimer timer;
+
+    @BeforeEach
+    void startTimer() {
+        timer = new HashedWheelTimer(runnable -> {
+            Thread thread = new Thread(runnable, "HashedWheelTimerTest");
+            thread.setDaemon(true);
+            return thread;
+        }, TICK_MILLIS, TimeUnit.MILLISECONDS, TICKS_PER_WHEEL);
+        timer.start();
+    }
+
+    @AfterEach
+    void closeTimer() {
+        timer.close();
+    }
+
+    @Test
+    void firesNotBeforeTheDeadline() throws InterruptedException {
+        CountDownLatch firedLatch = new CountDownLatch(1);
+        long startNanos = System.nanoTime();
+
+        HashedWheelTimer.Timeout timeout = timer.newTimeout(firedLatch::countDown, 50, TimeUnit.MILLISECONDS);
+
+        assertTrue(firedLatch.await(AWAIT_MILLIS, TimeUnit.MILLISECONDS));
+        assertTrue(System.nanoTime() - startNanos >= TimeUnit.MILLISECONDS.toNanos(50));
+        assertTrue(timeout.isExpired());
+    }
+
+    @Test
+    void firesTimeoutsLongerThanOneWheelRotationInDeadlineOrder() throws InterruptedException {
+        List<Long> firedDelays = new CopyOnWriteArrayList<>();
+        CountDownLatch firedLatch = new CountDownLatch(3);
+        long oneRotationMillis = TICK_MILLIS * TICKS_PER_WHEEL;
+        for (long delayMillis : new long[]{oneRotationMillis * 2 + 30, 30, oneRotationMillis + 30}) {
+            timer.newTimeout(() -> {
+                firedDelays.add(delayMillis);
+                firedLatch.countDown();
+            }, delayMillis, TimeUnit.MILLISECONDS);
+        }
+
+        assertTrue(firedLatch.await(AWAIT_MILLIS, TimeUnit.MILLISECONDS));
+        assertEquals(List.of(30L, oneRotationMillis + 30, oneRotationMillis * 2 + 30), firedDelays);
+    }
+
+    @Test
+    void cancelledTimeoutNeverFires() throws InterruptedException {
+        CountDownLatch cancelledLatch = new CountDownLatch(1);
+        CountDownLatch laterLatch = new CountDownLatch(1);
+
+        HashedWheelTimer.Timeout timeout = timer.newTimeout(cancelledLatch::countDown, 30, TimeUnit.MILLISECONDS);
+        timer.newTimeout(laterLatch::countDown, 100, TimeUnit.MILLISECONDS);
+
+        assertTrue(timeout.cancel());
+        assertTrue(laterLatch.await(AWAIT_MILLIS, TimeUnit.MILLISECONDS));
+        assertEquals(1, cancelledLatch.getCount());
+        assertTrue(timeout.isCancelled());
+        assertFalse(timeout.cancel());
+    }
+
+    @Test
+    void timeoutOnClosedTimerIsCancelled() {
+        timer.close();
+
+        HashedWheelTimer.Timeout timeout = timer.newTimeout(() -> { }, 0, TimeUnit.MILLISECONDS);
+
+        assertTrue(timeout.isCancelled());
+    }
+}
@@ -0,0 +1,55 @@
+package utilities;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenBucketTest {
+    private static final double ONE_TOKEN_PER_HOUR = 1.0 / TimeUnit.HOURS.toSeconds(1);
+
+    @Test
+    void grantsTheBurstAndThenReportsTheWait() {
+        TokenBucket tokenBucket = new TokenBucket(ONE_TOKEN_PER_HOUR, 3);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, tokenBucket.tryAcquire());
+        }
+        long waitNanos = tokenBucket.tryAcquire();
+
+        assertTrue(waitNanos > TimeUnit.MINUTES.toNanos(59) && waitNanos <= TimeUnit.HOURS.toNanos(1),
+                "Unexpected wait of " + waitNanos + " ns");
+    }
+
+    @Test
+    void refundReturnsTheToken() {
+        TokenBucket tokenBucket = new TokenBucket(ONE_TOKEN_PER_HOUR, 1);
+
+        assertEquals(0, tokenBucket.tryAcquire());
+        tokenBucket.refund();
+
+        assertEquals(0, tokenBucket.tryAcquire());
+        assertTrue(tokenBucket.tryAcquire() > 0);
+    }
+
+    @Test
+    void refillsAtTheConfiguredRate() throws InterruptedException {
+        TokenBucket tokenBucket = new TokenBucket(100, 1);
+
+        assertEquals(0, tokenBucket.tryAcquire());
+        long waitNanos = tokenBucket.tryAcquire();
+        assertTrue(waitNanos > 0 && waitNanos <= TimeUnit.MILLISECONDS.toNanos(10));
+
+        TimeUnit.NANOSECONDS.sleep(waitNanos);
+        assertEquals(0, tokenBucket.tryAcquire());
+    }
+
+    @Test
+    void rejectsNonPositiveSettings() {
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(1, 0));
+    }
+}